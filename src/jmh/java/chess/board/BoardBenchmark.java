@@ -0,0 +1,55 @@
+package chess.board;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures move generation and parsing of {@code position} commands. Run with {@code gc} profiler (enabled in
+ * {@code build.gradle}) to see that move generation, {@link Board#makeMove(int)} and {@link Board#unmakeMove()} don't
+ * allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoardBenchmark {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static final String POSITION = "position startpos moves e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 "
+            + "f8e7 f1e1 b7b5 a4b3 d7d6 c2c3 e8g8 h2h3 c6b8 d2d4 b8d7 c3c4 c7c6 c4b5 a6b5 b1c3 c8b7 c1g5 b5b4";
+
+    private Board board;
+
+    private final int[] moves = new int[Board.MAX_MOVES];
+
+    @Setup
+    public void setup() {
+        board = Board.fromFen(KIWIPETE);
+    }
+
+    /**
+     * Leaf nodes of depth 3 perft per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(97862)
+    public long perft() {
+        return board.perft(3);
+    }
+
+    @Benchmark
+    public int legalMoves() {
+        return board.legalMoves(moves);
+    }
+
+    /**
+     * Parses {@code position} command of 30 moves and computes its position key.
+     */
+    @Benchmark
+    public String positionKey() {
+        return Board.fromPosition(POSITION).positionKey();
+    }
+}
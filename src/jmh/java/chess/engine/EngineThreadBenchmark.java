@@ -0,0 +1,72 @@
+package chess.engine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures engine output passed through {@link EngineThread}, using scripted engine {@code engines/fakeuci}, so it
+ * must be run from the project directory. {@link #search()} reports engine lines per second, {@link #roundTrip()}
+ * time from writing {@code isready} until {@code readyok} is passed to listeners.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineThreadBenchmark {
+
+    static final int DEPTH = 20;
+
+    @Param({"EVENT_DRIVEN", "POLLING"})
+    public String ioMode;
+
+    private EngineThread engineThread;
+
+    private volatile CompletableFuture<Void> bestMove;
+
+    private volatile CompletableFuture<Void> readyOk;
+
+    @Setup
+    public void setup() throws Exception {
+        if (!new File("engines/fakeuci").canExecute()) {
+            throw new IllegalStateException("Run benchmark from project directory, engines/fakeuci not found");
+        }
+        engineThread = new EngineThread("fakeuci", EngineThread.IoMode.valueOf(ioMode));
+        engineThread.addListeners(line -> {
+            if (line.startsWith("bestmove")) {
+                bestMove.complete(null);
+            } else if (line.startsWith("readyok")) {
+                readyOk.complete(null);
+            }
+        });
+        engineThread.start();
+        engineThread.makeReady("uci").get(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        engineThread.setShouldStop(true);
+        engineThread.join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(DEPTH + 1)
+    public void search() throws Exception {
+        bestMove = new CompletableFuture<>();
+        engineThread.processRawCommand("go depth " + DEPTH);
+        bestMove.get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void roundTrip() throws Exception {
+        readyOk = new CompletableFuture<>();
+        engineThread.processRawCommand("isready");
+        readyOk.get(10, TimeUnit.SECONDS);
+    }
+}
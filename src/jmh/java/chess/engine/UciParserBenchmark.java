@@ -0,0 +1,74 @@
+package chess.engine;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures engine output lines parsed per second. Run with {@code gc} profiler (enabled in {@code build.gradle}) to
+ * see bytes allocated per line ({@code gc.alloc.rate.norm} divided by {@link #LINES}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UciParserBenchmark {
+
+    static final int LINES = 4;
+
+    private final String[] lines = {
+            "info depth 24 seldepth 33 multipv 1 score cp 31 nodes 3312541 nps 1656270 hashfull 871 tbhits 0 "
+                    + "time 2000 pv e2e4 e7e5 g1f3 b8c6 f1b5 g8f6 e1g1 f6e4 f1e1 e4d6 f3e5 f8e7 b5f1 c6e5 e1e5",
+            "info depth 24 seldepth 30 multipv 2 score cp 24 upperbound nodes 3312541 nps 1656270 hashfull 871 "
+                    + "tbhits 0 time 2000 pv d2d4 g8f6 c2c4 e7e6 g1f3 d7d5 b1c3 f8e7 c1f4 e8g8 e2e3 c7c5",
+            "info depth 24 currmove g1f3 currmovenumber 3",
+            "bestmove e2e4 ponder e7e5"
+    };
+
+    private UciParser parser;
+
+    private long consumed;
+
+    @Setup
+    public void setup() {
+        parser = new UciParser();
+        parser.addListener(new UciListener() {
+            @Override
+            public void onInfo(UciInfo info) {
+                consumed += info.getScore() + info.getPvLength();
+            }
+
+            @Override
+            public void onBestMove(UciBestMove bestMove) {
+                consumed += bestMove.getMove();
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long parse() {
+        for (String line : lines) {
+            parser.parse(line);
+        }
+        return consumed;
+    }
+
+    /**
+     * Tokenizing with {@link String#split(String)}, as every consumer of raw lines would have to do.
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void split(Blackhole blackhole) {
+        for (String line : lines) {
+            String[] tokens = line.split(" ");
+            for (int i = 0; i < tokens.length - 1; i++) {
+                if (tokens[i].equals("cp")) blackhole.consume(Integer.parseInt(tokens[i + 1]));
+            }
+            blackhole.consume(tokens.length);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package chess.filter;
+
+import chess.Constants;
+import chess.server.ServerStatus;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JwtFilter#doFilter} cost per request for a few clients sending requests in quick succession, with
+ * and without cache of verified tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "zk6bYYku8FGmW5eG#GlShIMd5b$bXaAi0NS6q?7CfxM1ioVK09J!8xYwbOJFmOsoGOZ48ycAtmmma?Vy9L8Vb";
+
+    private static final int CLIENTS = 16;
+
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    private final MockHttpServletRequest[] requests = new MockHttpServletRequest[CLIENTS];
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private final FilterChain chain = (request, response) -> {
+    };
+
+    private JwtFilter filter;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        Constants constants = new Constants() {
+            @Override
+            public String getJWT_SECRET_KEY() {
+                return SECRET;
+            }
+
+            @Override
+            public int getJWT_CACHE_SIZE() {
+                return cacheSize;
+            }
+
+            @Override
+            public int getMAX_CONCURRENT_ENGINES() {
+                return CLIENTS;
+            }
+
+            @Override
+            public long getMAX_USER_INACTIVE() {
+                return TimeUnit.HOURS.toMillis(1);
+            }
+
+            @Override
+            public boolean getLOG() {
+                return false;
+            }
+        };
+        filter = new JwtFilter(new ServerStatus(constants), constants);
+
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < CLIENTS; i++) {
+            String token = Jwts.builder()
+                    .setSubject("user" + i)
+                    .setExpiration(expiration)
+                    .signWith(SignatureAlgorithm.HS256, SECRET)
+                    .compact();
+            requests[i] = new MockHttpServletRequest("POST", "/engine/send");
+            requests[i].addHeader("authorization", "Bearer " + token);
+        }
+    }
+
+    @Benchmark
+    public Object doFilter() throws Exception {
+        next = (next + 1) % CLIENTS;
+        filter.doFilter(requests[next], response, chain);
+        return requests[next].getAttribute(JwtFilter.TOKEN_ATTRIBUTE);
+    }
+}
@@ -0,0 +1,69 @@
+package chess.filter;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tokens verified per second by {@link JwtFilter}: parser built on every request (previous filter), parser
+ * built once, and parser built once with cache of verified tokens. Every benchmark verifies the same small set of
+ * tokens, like a few clients sending commands in quick succession.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerifierBenchmark {
+
+    private static final String SECRET = "zk6bYYku8FGmW5eG#GlShIMd5b$bXaAi0NS6q?7CfxM1ioVK09J!8xYwbOJFmOsoGOZ48ycAtmmma?Vy9L8Vb";
+
+    private static final int CLIENTS = 16;
+
+    private final String[] tokens = new String[CLIENTS];
+
+    private TokenVerifier uncached;
+
+    private TokenVerifier cached;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < CLIENTS; i++) {
+            tokens[i] = Jwts.builder()
+                    .setSubject("user" + i)
+                    .setExpiration(expiration)
+                    .signWith(SignatureAlgorithm.HS256, SECRET)
+                    .compact();
+        }
+        uncached = new TokenVerifier(SECRET, 0);
+        cached = new TokenVerifier(SECRET, 1000);
+    }
+
+    private String nextToken() {
+        next = (next + 1) % CLIENTS;
+        return tokens[next];
+    }
+
+    @Benchmark
+    public Claims parserPerRequest() {
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(nextToken()).getBody();
+    }
+
+    @Benchmark
+    public Claims prebuiltParser() {
+        return uncached.verify(nextToken());
+    }
+
+    @Benchmark
+    public Claims cachedTokens() {
+        return cached.verify(nextToken());
+    }
+}
@@ -0,0 +1,41 @@
+package chess.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of {@link ServerLogger#log} for engine output lines, with logging enabled and disabled. Records are
+ * written by the logger thread, so enabled throughput includes sampling and dropping when the buffer is full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerLoggerBenchmark {
+
+    private static final String LINE = "info depth 24 seldepth 33 multipv 1 score cp 31 nodes 3312541 nps 1656270 "
+            + "hashfull 871 tbhits 0 time 2000 pv e2e4 e7e5 g1f3 b8c6 f1b5 g8f6 e1g1 f6e4 f1e1 e4d6 f3e5 f8e7";
+
+    @Param({"true", "false"})
+    public boolean log;
+
+    private ServerLogger logger;
+
+    @Setup
+    public void setup() {
+        logger = new ServerLogger(ServerLoggerBenchmark.class.getName(), log);
+    }
+
+    @Benchmark
+    public void log() {
+        logger.log("in", LINE);
+    }
+
+    @Benchmark
+    public void logFormatted() {
+        logger.log("status", "Engine %s sent %d lines", "stockfish", 42);
+    }
+}
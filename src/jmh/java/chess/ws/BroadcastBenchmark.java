@@ -0,0 +1,159 @@
+package chess.ws;
+
+import chess.engine.EngineBroadcaster;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures engine lines passed from {@link EngineBroadcaster} to web socket sessions of {@link SpectatorGroup}. Messages
+ * are sent on the calling thread to sessions which only count them, so the result is the cost of fan-out itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    private static final String LINE = "info depth 24 seldepth 33 multipv 1 score cp 31 nodes 3312541 nps 1656270 "
+            + "hashfull 871 tbhits 0 time 2000 pv e2e4 e7e5 g1f3 b8c6 f1b5 g8f6 e1g1 f6e4 f1e1 e4d6 f3e5 f8e7";
+
+    @Param({"1", "10", "100"})
+    public int sessions;
+
+    private EngineBroadcaster broadcaster;
+
+    private CountingSession[] counting;
+
+    @Setup
+    public void setup() {
+        broadcaster = new EngineBroadcaster();
+        SpectatorGroup group = new SpectatorGroup(Runnable::run, 1024, false);
+        counting = new CountingSession[sessions];
+        for (int i = 0; i < sessions; i++) {
+            counting[i] = new CountingSession(Integer.toString(i));
+            group.add(counting[i]);
+        }
+        broadcaster.subscribe(group);
+    }
+
+    @Benchmark
+    public void broadcast() {
+        broadcaster.onEngineOutput(LINE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (CountingSession session : counting) {
+            if (session.sent == 0) throw new IllegalStateException("Session " + session.id + " received nothing");
+        }
+    }
+
+    private static class CountingSession implements WebSocketSession {
+
+        private final String id;
+
+        private final Map<String, Object> attributes = new HashMap<>();
+
+        private long sent;
+
+        CountingSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return null;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            sent++;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package chess.loadtest;
+
+import chess.ChessServerApplication;
+import chess.server.LatencyHistogram;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many concurrent web socket analysis sessions a single server holds. Starts the server in this JVM with
+ * scripted engine {@code engines/fakeuci} (or uses server given with {@code --url}), opens {@code --clients}
+ * authenticated {@code /ws_engine} sessions with generated tokens and runs searches in a loop on every session for
+ * {@code --duration} seconds. Reports latency from {@code go} to the first {@code info} frame and to {@code bestmove}
+ * frame, and received frames per second. Nothing leaves the local machine.
+ * <p>
+ * Options, all optional: {@code --clients=100 --duration=30 --depth=10 --info-interval=10 --bestmove-delay=0
+ * --ramp-up=5 --url=http://localhost:8080 --secret=<config.JWT_SECRET_KEY of the server>}.
+ */
+public class LoadTest {
+
+    private static final String ENGINE = "fakeuci";
+
+    private final Map<String, String> options;
+
+    private final int clients;
+
+    private final LatencyHistogram firstInfo = new LatencyHistogram();
+
+    private final LatencyHistogram bestMove = new LatencyHistogram();
+
+    private final LongAdder frames = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    private volatile boolean running = true;
+
+    /**
+     * whether latencies and frames are recorded, i.e. all clients are connected.
+     */
+    private volatile boolean measuring = false;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "100"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        ConfigurableApplicationContext server = null;
+        String url = options.get("url");
+        String secret = options.get("secret");
+        if (url == null) {
+            server = startServer();
+            url = "http://localhost:" + server.getEnvironment().getProperty("local.server.port");
+            secret = server.getEnvironment().getProperty("config.JWT_SECRET_KEY");
+        }
+        if (secret == null) {
+            throw new IllegalArgumentException("--secret is required together with --url");
+        }
+
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        long rampUp = TimeUnit.SECONDS.toMillis(Integer.parseInt(options.getOrDefault("ramp-up", "5")));
+        System.out.printf("%d clients, %d s, depth %s, info every %s ms, bestmove delay %s ms, server %s%n",
+                clients, duration, options.getOrDefault("depth", "10"), options.getOrDefault("info-interval", "10"),
+                options.getOrDefault("bestmove-delay", "0"), url);
+
+        List<Client> connected = new ArrayList<>();
+        List<CompletableFuture<Client>> connecting = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            connecting.add(connect(url, token(secret, i)));
+            Thread.sleep(rampUp / clients);
+        }
+        for (CompletableFuture<Client> client : connecting) {
+            try {
+                connected.add(client.get(30, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                errors.increment();
+                System.err.println("Client failed to connect: " + e.getMessage());
+            }
+        }
+        System.out.printf("%d clients connected%n", connected.size());
+
+        long start = System.nanoTime();
+        measuring = true;
+        Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+        measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long received = frames.sum();
+        running = false;
+
+        System.out.printf("frames: %d (%.0f/s), errors: %d%n", received, received / seconds, errors.sum());
+        print("go -> first info", firstInfo);
+        print("go -> bestmove", bestMove);
+
+        for (Client client : connected) {
+            client.webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private ConfigurableApplicationContext startServer() {
+        return SpringApplication.run(ChessServerApplication.class,
+                "--server.port=0",
+                "--config.MAX_CONCURRENT_ENGINES=" + clients,
+                "--config.ENGINE_POOL=" + ENGINE + ":" + clients,
+                "--config.EVAL_CACHE_SIZE=0",
+                "--config.LOG=false",
+                "--logging.level.root=WARN");
+    }
+
+    private static String token(String secret, int client) {
+        return Jwts.builder()
+                .setSubject("load-test-" + client)
+                .setIssuedAt(new Date())
+                .signWith(SignatureAlgorithm.HS256, secret)
+                .compact();
+    }
+
+    /**
+     * Starts engine of the user, opens web socket and starts the first search.
+     */
+    private CompletableFuture<Client> connect(String url, String token) {
+        HttpRequest start = HttpRequest.newBuilder(URI.create(url + "/engine/start"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        String.format("{\"name\":\"%s\",\"path\":\"%s\"}", ENGINE, ENGINE)))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+
+        Client client = new Client();
+        return http.sendAsync(start, HttpResponse.BodyHandlers.ofString())
+                .thenCompose(response -> {
+                    if (response.statusCode() != 200 || !response.body().contains("started")) {
+                        throw new IllegalStateException("Engine not started: " + response.statusCode() + " "
+                                + response.body());
+                    }
+                    return http.newWebSocketBuilder()
+                            .header("Authorization", "Bearer " + token)
+                            .buildAsync(URI.create(url.replaceFirst("^http", "ws") + "/ws_engine"), client);
+                })
+                .thenCompose(webSocket -> {
+                    client.webSocket = webSocket;
+                    return webSocket.sendText("setoption name InfoInterval value "
+                            + options.getOrDefault("info-interval", "10"), true);
+                })
+                .thenCompose(webSocket -> webSocket.sendText("setoption name BestmoveDelay value "
+                        + options.getOrDefault("bestmove-delay", "0"), true))
+                .thenApply(webSocket -> {
+                    client.go();
+                    return client;
+                });
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.printf("%-18s n=%d p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n", name, histogram.getCount(),
+                histogram.getValueAtQuantile(0.5) / 1e6, histogram.getValueAtQuantile(0.99) / 1e6,
+                histogram.getValueAtQuantile(0.999) / 1e6, histogram.getValueAtQuantile(1) / 1e6);
+    }
+
+    /**
+     * Single web socket session, which starts new search right after the previous one finished.
+     */
+    private class Client implements WebSocket.Listener {
+
+        private WebSocket webSocket;
+
+        private final StringBuilder partial = new StringBuilder();
+
+        private long searchStart;
+
+        private boolean infoReceived;
+
+        /**
+         * sends {@code go}, sends are serialized because the next search starts from listener thread.
+         */
+        synchronized void go() {
+            infoReceived = false;
+            searchStart = System.nanoTime();
+            webSocket.sendText("go depth " + options.getOrDefault("depth", "10"), true);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                onFrame(partial.toString());
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        private synchronized void onFrame(String frame) {
+            boolean measuring = LoadTest.this.measuring;
+            if (measuring) frames.increment();
+            long latency = System.nanoTime() - searchStart;
+            if (frame.startsWith("info") && !infoReceived) {
+                infoReceived = true;
+                if (measuring) firstInfo.record(latency);
+            } else if (frame.startsWith("bestmove")) {
+                if (measuring) bestMove.record(latency);
+                if (running) go();
+            }
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            errors.increment();
+            System.err.println("Web socket error: " + error.getMessage());
+        }
+    }
+}
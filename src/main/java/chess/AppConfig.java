@@ -3,14 +3,20 @@ package chess;
 import chess.engine.EngineHandler;
 import chess.filter.ExceptionHandlerFilter;
 import chess.filter.JwtFilter;
+import chess.server.ExecutionThreads;
+import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
 import chess.server.ServerStatus;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PostConstruct;
 import java.util.Arrays;
+import java.util.Set;
 
 
 /**
@@ -25,14 +31,45 @@ public class AppConfig {
     @Bean
     public Constants constantsProperties(){ return new Constants(); }
 
+    /**
+     * Applies {@code config.LOG} and tag levels to every {@link ServerLogger}.
+     */
+    @PostConstruct
+    public void configureLogging() {
+        Constants constants = constantsProperties();
+        ServerLogger.configure(constants.getLOG(), constants.getLOG_LEVELS(), constants.getLOG_BUFFER_SIZE());
+        ServerMetrics.registerGauge("logBuffered", ServerLogger::getBuffered);
+        ServerMetrics.registerGauge("logDropped", ServerLogger::getDropped);
+    }
+
     @Bean
     public ServerStatus serverStatus() {
-        return new ServerStatus(constantsProperties());
+        ServerStatus serverStatus = new ServerStatus(constantsProperties());
+        serverStatus.addSessionListener(engineHandler());
+        return serverStatus;
+    }
+
+    @Bean
+    public ExecutionThreads executionThreads() {
+        return new ExecutionThreads(ExecutionThreads.Mode.valueOf(constantsProperties().getTHREAD_MODE()),
+                constantsProperties().getLOG());
     }
 
     @Bean
     public EngineHandler engineHandler() {
-        return new EngineHandler();
+        return new EngineHandler(constantsProperties(), executionThreads());
+    }
+
+    /**
+     * Runs request handling on virtual threads in {@code VIRTUAL} thread mode. Tomcat worker pool is used otherwise.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsCustomizer() {
+        return protocolHandler -> {
+            if (executionThreads().isVirtual()) {
+                protocolHandler.setExecutor(executionThreads().newExecutor("http"));
+            }
+        };
     }
 
 
@@ -47,13 +84,14 @@ public class AppConfig {
     }
 
     /**
-     * This method defines which routes should be filtered by {@link JwtFilter}
+     * This method defines which routes should be filtered by {@link JwtFilter}. Metrics scrapes need a token, but
+     * don't take a user slot.
      * @return configured FilterRegistrationBean
      */
     @Bean
     public FilterRegistrationBean jwtFilter() {
         FilterRegistrationBean registrationBean = new FilterRegistrationBean();
-        registrationBean.setFilter(new JwtFilter(serverStatus(), constantsProperties()));
+        registrationBean.setFilter(new JwtFilter(serverStatus(), constantsProperties(), Set.of("/receiver/metrics")));
         registrationBean.setUrlPatterns(Arrays.asList(
                 "/receiver/*",
                 "/engine/*",
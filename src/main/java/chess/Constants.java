@@ -22,9 +22,176 @@ public class Constants{
     @Value("${config.MAX_USER_INACTIVE}")
     long MAX_USER_INACTIVE;
 
+    /**
+     * Maximal number of users (and therefore engines) served at the same time. Non-positive value means number of
+     * available processors.
+     */
+    @Value("${config.MAX_CONCURRENT_ENGINES:0}")
+    int MAX_CONCURRENT_ENGINES;
+
+    /**
+     * Comma separated list of {@code path:size} pairs. For every engine path there will be {@code size} engine
+     * processes kept ready for users.
+     */
+    @Value("${config.ENGINE_POOL:}")
+    String ENGINE_POOL;
+
+    /**
+     * Maximal number of finished searches kept in evaluation cache. Zero disables the cache.
+     */
+    @Value("${config.EVAL_CACHE_SIZE:0}")
+    int EVAL_CACHE_SIZE;
+
+    /**
+     * Maximal number of engines used by a single batch analysis. Non-positive value means number of available
+     * processors.
+     */
+    @Value("${config.BATCH_WORKERS:0}")
+    int BATCH_WORKERS;
+
+    /**
+     * Default time in ms between two sends of coalesced engine {@code info} lines to web socket client. Zero sends
+     * every line immediately.
+     */
+    @Value("${config.WS_COALESCE_INTERVAL:0}")
+    long WS_COALESCE_INTERVAL;
+
+    /**
+     * Maximal number of messages waiting to be sent to a single web socket client. Engine {@code info} lines above
+     * this limit are dropped.
+     */
+    @Value("${config.WS_QUEUE_CAPACITY:1024}")
+    int WS_QUEUE_CAPACITY;
+
+    /**
+     * Maximal time in ms of a single {@code /engine/analyse} search. Engine is stopped after that time.
+     */
+    @Value("${config.MAX_ANALYSE_DEADLINE:60000}")
+    long MAX_ANALYSE_DEADLINE;
+
+    /**
+     * Maximal number of verified JWT tokens kept in cache, {@code 0} verifies every request.
+     */
+    @Value("${config.JWT_CACHE_SIZE:10000}")
+    int JWT_CACHE_SIZE;
+
+    /**
+     * Threads running engine i/o, web socket senders and request handling: {@code PLATFORM} or {@code VIRTUAL}
+     * (JDK 21+).
+     */
+    @Value("${config.THREAD_MODE:PLATFORM}")
+    String THREAD_MODE;
+
     @Value("${config.LOG}")
     boolean LOG;
 
+    /**
+     * Maximal number of searches running at the same time, other searches wait in queue. {@code 0} for number of
+     * CPUs.
+     */
+    @Value("${config.JOB_SLOTS:0}")
+    int JOB_SLOTS;
+
+    /**
+     * Maximal time of a single search in ms, longer searches are stopped. {@code 0} if not limited.
+     */
+    @Value("${config.JOB_MAX_MOVETIME:300000}")
+    long JOB_MAX_MOVETIME;
+
+    /**
+     * Maximal number of nodes of a single search, longer searches are stopped. {@code 0} if not limited.
+     */
+    @Value("${config.JOB_MAX_NODES:0}")
+    long JOB_MAX_NODES;
+
+    /**
+     * Whether host CPUs are shared between engines by limiting their {@code Threads} option.
+     */
+    @Value("${config.ENGINE_SCHEDULER:true}")
+    boolean ENGINE_SCHEDULER;
+
+    /**
+     * CPUs available to engines, e.g. {@code 2-7} or {@code 0,2,4-6}, empty for all CPUs.
+     */
+    @Value("${config.ENGINE_CPUS:}")
+    String ENGINE_CPUS;
+
+    /**
+     * Maximal {@code Hash} of a single engine in MB, {@code 0} if not limited.
+     */
+    @Value("${config.ENGINE_MAX_HASH:0}")
+    int ENGINE_MAX_HASH;
+
+    /**
+     * Whether every engine process is pinned to its own CPUs with {@code taskset}, Linux only.
+     */
+    @Value("${config.ENGINE_AFFINITY:false}")
+    boolean ENGINE_AFFINITY;
+
+    /**
+     * Polyglot {@code .bin} opening book answering {@code go} in book positions, empty disables the book.
+     */
+    @Value("${config.BOOK_FILE:}")
+    String BOOK_FILE;
+
+    /**
+     * File with 781 Polyglot random numbers used for book keys, e.g. {@code Random64} array from Polyglot sources.
+     * Empty uses the numbers bundled with the server.
+     */
+    @Value("${config.BOOK_RANDOM_FILE:}")
+    String BOOK_RANDOM_FILE;
+
+    /**
+     * Maximal number of speculative searches on the host, each uses one CPU. {@code 0}, the default, disables
+     * speculation.
+     */
+    @Value("${config.SPECULATION_CPUS:0}")
+    int SPECULATION_CPUS;
+
+    /**
+     * Maximal number of positions searched speculatively after a single search of the user.
+     */
+    @Value("${config.SPECULATION_MOVES:3}")
+    int SPECULATION_MOVES;
+
+    /**
+     * Directory where transcripts of all engine i/o are recorded, empty disables recording.
+     */
+    @Value("${config.TRANSCRIPT_DIR:}")
+    String TRANSCRIPT_DIR;
+
+    /**
+     * Size of a single transcript file in bytes.
+     */
+    @Value("${config.TRANSCRIPT_FILE_SIZE:67108864}")
+    int TRANSCRIPT_FILE_SIZE;
+
+    /**
+     * Number of kept transcript files, older files are deleted.
+     */
+    @Value("${config.TRANSCRIPT_FILES:8}")
+    int TRANSCRIPT_FILES;
+
+    /**
+     * Levels of log tags, e.g. {@code in:INFO,out:INFO,status:OFF}. Tags which are not listed are logged at
+     * {@code INFO}, {@code error} at {@code ERROR}, engine traffic {@code in} and {@code out} at {@code DEBUG}.
+     */
+    @Value("${config.LOG_LEVELS:}")
+    String LOG_LEVELS;
+
+    /**
+     * Capacity of the log ring buffer. Engine i/o records are sampled when it is nearly full and dropped when it is
+     * full.
+     */
+    @Value("${config.LOG_BUFFER_SIZE:8192}")
+    int LOG_BUFFER_SIZE;
+
+    /**
+     * How engine process i/o is handled: {@code EVENT_DRIVEN} or legacy {@code POLLING}.
+     */
+    @Value("${config.ENGINE_IO_MODE:EVENT_DRIVEN}")
+    String ENGINE_IO_MODE;
+
     public String getJWT_SECRET_KEY(){
         return JWT_SECRET_KEY;
     }
@@ -33,5 +200,77 @@ public class Constants{
         return MAX_USER_INACTIVE;
     }
 
+    public int getMAX_CONCURRENT_ENGINES() {
+        return MAX_CONCURRENT_ENGINES > 0 ? MAX_CONCURRENT_ENGINES : Runtime.getRuntime().availableProcessors();
+    }
+
+    public String getENGINE_POOL() {
+        return ENGINE_POOL;
+    }
+
+    public int getEVAL_CACHE_SIZE() {
+        return EVAL_CACHE_SIZE;
+    }
+
+    public int getBATCH_WORKERS() {
+        return BATCH_WORKERS > 0 ? BATCH_WORKERS : Runtime.getRuntime().availableProcessors();
+    }
+
+    public long getWS_COALESCE_INTERVAL() {
+        return WS_COALESCE_INTERVAL;
+    }
+
+    public int getWS_QUEUE_CAPACITY() {
+        return WS_QUEUE_CAPACITY;
+    }
+
+    public long getMAX_ANALYSE_DEADLINE() {
+        return MAX_ANALYSE_DEADLINE;
+    }
+
+    public int getJWT_CACHE_SIZE() {
+        return JWT_CACHE_SIZE;
+    }
+
+    public String getTHREAD_MODE() {
+        return THREAD_MODE;
+    }
+
     public boolean getLOG() { return LOG; }
+
+    public String getLOG_LEVELS() { return LOG_LEVELS; }
+
+    public int getLOG_BUFFER_SIZE() { return LOG_BUFFER_SIZE; }
+
+    public int getJOB_SLOTS() {
+        return JOB_SLOTS > 0 ? JOB_SLOTS : Runtime.getRuntime().availableProcessors();
+    }
+
+    public long getJOB_MAX_MOVETIME() { return JOB_MAX_MOVETIME; }
+
+    public long getJOB_MAX_NODES() { return JOB_MAX_NODES; }
+
+    public boolean getENGINE_SCHEDULER() { return ENGINE_SCHEDULER; }
+
+    public String getENGINE_CPUS() { return ENGINE_CPUS; }
+
+    public int getENGINE_MAX_HASH() { return ENGINE_MAX_HASH; }
+
+    public boolean getENGINE_AFFINITY() { return ENGINE_AFFINITY; }
+
+    public String getBOOK_FILE() { return BOOK_FILE; }
+
+    public String getBOOK_RANDOM_FILE() { return BOOK_RANDOM_FILE; }
+
+    public int getSPECULATION_CPUS() { return SPECULATION_CPUS; }
+
+    public int getSPECULATION_MOVES() { return SPECULATION_MOVES; }
+
+    public String getTRANSCRIPT_DIR() { return TRANSCRIPT_DIR; }
+
+    public int getTRANSCRIPT_FILE_SIZE() { return TRANSCRIPT_FILE_SIZE; }
+
+    public int getTRANSCRIPT_FILES() { return TRANSCRIPT_FILES; }
+
+    public String getENGINE_IO_MODE() { return ENGINE_IO_MODE; }
 }
\ No newline at end of file
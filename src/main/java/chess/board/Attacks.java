@@ -0,0 +1,86 @@
+package chess.board;
+
+/**
+ * Precomputed attack tables. Sliding attacks are computed from rays: squares behind the first blocker on a ray are
+ * removed with the ray starting at the blocker, which needs only one bit scan per direction and no allocation.
+ */
+final class Attacks {
+
+    static final long[] KNIGHT = new long[64];
+
+    static final long[] KING = new long[64];
+
+    /**
+     * squares attacked by pawn of color on square, by color.
+     */
+    static final long[][] PAWN = new long[2][64];
+
+    /**
+     * directions N, E, NE, NW (increasing squares) and S, W, SE, SW (decreasing squares).
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}, {0, -1}, {-1, 0}, {1, -1}, {-1, -1}};
+
+    private static final int N = 0, E = 1, NE = 2, NW = 3, S = 4, W = 5, SE = 6, SW = 7;
+
+    /**
+     * squares in direction from square, by direction.
+     */
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+        int[][] knight = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7, rank = square >>> 3;
+            for (int[] jump : knight) {
+                KNIGHT[square] |= bit(file + jump[0], rank + jump[1]);
+            }
+            for (int[] direction : DIRECTIONS) {
+                KING[square] |= bit(file + direction[0], rank + direction[1]);
+            }
+            PAWN[Board.WHITE][square] = bit(file - 1, rank + 1) | bit(file + 1, rank + 1);
+            PAWN[Board.BLACK][square] = bit(file - 1, rank - 1) | bit(file + 1, rank - 1);
+
+            for (int d = 0; d < 8; d++) {
+                for (int f = file + DIRECTIONS[d][0], r = rank + DIRECTIONS[d][1];
+                     f >= 0 && f < 8 && r >= 0 && r < 8; f += DIRECTIONS[d][0], r += DIRECTIONS[d][1]) {
+                    RAYS[d][square] |= 1L << (r * 8 + f);
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    private static long bit(int file, int rank) {
+        return file < 0 || file > 7 || rank < 0 || rank > 7 ? 0 : 1L << (rank * 8 + file);
+    }
+
+    static long bishop(int square, long occupied) {
+        return positiveRay(NE, square, occupied) | positiveRay(NW, square, occupied)
+                | negativeRay(SE, square, occupied) | negativeRay(SW, square, occupied);
+    }
+
+    static long rook(int square, long occupied) {
+        return positiveRay(N, square, occupied) | positiveRay(E, square, occupied)
+                | negativeRay(S, square, occupied) | negativeRay(W, square, occupied);
+    }
+
+    private static long positiveRay(int direction, int square, long occupied) {
+        long attacks = RAYS[direction][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+        }
+        return attacks;
+    }
+
+    private static long negativeRay(int direction, int square, long occupied) {
+        long attacks = RAYS[direction][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+        }
+        return attacks;
+    }
+}
@@ -0,0 +1,702 @@
+package chess.board;
+
+/**
+ * Chess position as bitboards, one {@code long} per piece and per color, with a square to piece table for fast
+ * lookups. Moves are made and unmade in place, all state needed to unmake a move is kept in preallocated arrays, and
+ * Zobrist hash is updated incrementally, so move generation, {@link #makeMove(int)} and {@link #unmakeMove()} don't
+ * allocate. Board is not thread safe.
+ * <p>
+ * Pieces are numbered {@code color * 6 + type}, squares {@code a1 = 0, b1 = 1, ..., h8 = 63}. En passant square is
+ * only set when en passant capture is possible, so positions which differ only in en passant square that can't be used
+ * are the same.
+ */
+public final class Board {
+
+    public static final int WHITE = 0, BLACK = 1;
+
+    public static final int PAWN = 0, KNIGHT = 1, BISHOP = 2, ROOK = 3, QUEEN = 4, KING = 5;
+
+    /**
+     * no piece on square.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * maximal number of legal moves in any position is 218.
+     */
+    public static final int MAX_MOVES = 256;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final int WHITE_SHORT = 1, WHITE_LONG = 2, BLACK_SHORT = 4, BLACK_LONG = 8;
+
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+
+    /**
+     * castling rights kept after a move from or to square, by square.
+     */
+    private static final int[] CASTLING_MASK = new int[64];
+
+    private static final long RANK_1 = 0xFFL, RANK_8 = 0xFFL << 56;
+
+    static {
+        java.util.Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] = ~WHITE_LONG & 15;
+        CASTLING_MASK[4] = ~(WHITE_SHORT | WHITE_LONG) & 15;
+        CASTLING_MASK[7] = ~WHITE_SHORT & 15;
+        CASTLING_MASK[56] = ~BLACK_LONG & 15;
+        CASTLING_MASK[60] = ~(BLACK_SHORT | BLACK_LONG) & 15;
+        CASTLING_MASK[63] = ~BLACK_SHORT & 15;
+    }
+
+    private final long[] pieces = new long[12];
+
+    private final long[] colors = new long[2];
+
+    private final int[] squares = new int[64];
+
+    private int side;
+
+    private int castling;
+
+    private int epSquare = -1;
+
+    private int halfmoveClock;
+
+    private int fullmoveNumber = 1;
+
+    private long hash;
+
+    /**
+     * number of moves made on this board, index into history arrays.
+     */
+    private int ply;
+
+    private int[] moveHistory = new int[64];
+
+    private int[] capturedHistory = new int[64];
+
+    private int[] castlingHistory = new int[64];
+
+    private int[] epHistory = new int[64];
+
+    private int[] halfmoveHistory = new int[64];
+
+    /**
+     * hash before every move.
+     */
+    private long[] hashHistory = new long[64];
+
+    /**
+     * move list used by {@link #legalMove(int)}.
+     */
+    private final int[] scratch = new int[MAX_MOVES];
+
+    private Board() {
+        java.util.Arrays.fill(squares, NONE);
+    }
+
+    public static Board startpos() {
+        return fromFen(START_FEN);
+    }
+
+    /**
+     * @param fen position in FEN, halfmove clock and fullmove number may be omitted.
+     * @throws IllegalArgumentException if FEN is malformed or position is not legal, e.g. side not to move is in
+     *                                  check.
+     */
+    public static Board fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new IllegalArgumentException("FEN must have 4 to 6 fields: " + fen);
+        }
+
+        Board board = new Board();
+        int rank = 7, file = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                if (file != 8) throw new IllegalArgumentException("Rank " + (rank + 1) + " does not have 8 files");
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = PIECE_LETTERS.indexOf(c);
+                if (piece < 0) throw new IllegalArgumentException("Invalid piece " + c);
+                if (rank < 0 || file > 7) throw new IllegalArgumentException("Too many squares in " + fields[0]);
+                board.put(rank * 8 + file++, piece);
+            }
+            if (file > 8) throw new IllegalArgumentException("Too many squares in " + fields[0]);
+        }
+        if (rank != 0 || file != 8) throw new IllegalArgumentException("Board must have 8 ranks: " + fields[0]);
+
+        if (fields[1].equals("w")) {
+            board.side = WHITE;
+        } else if (fields[1].equals("b")) {
+            board.side = BLACK;
+        } else {
+            throw new IllegalArgumentException("Invalid side to move " + fields[1]);
+        }
+
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                int right = "KQkq".indexOf(c);
+                if (right < 0) throw new IllegalArgumentException("Invalid castling rights " + fields[2]);
+                board.castling |= 1 << right;
+            }
+        }
+
+        int ep = NONE;
+        if (!fields[3].equals("-")) {
+            ep = Move.parseSquare(fields[3], 0);
+            if (ep < 0 || fields[3].length() != 2 || (ep >>> 3) != (board.side == WHITE ? 5 : 2)) {
+                throw new IllegalArgumentException("Invalid en passant square " + fields[3]);
+            }
+        }
+
+        try {
+            board.halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            board.fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid move counters in " + fen);
+        }
+        if (board.halfmoveClock < 0 || board.fullmoveNumber < 1) {
+            throw new IllegalArgumentException("Invalid move counters in " + fen);
+        }
+
+        board.validate();
+        board.castling &= board.possibleCastling();
+        int them = board.side ^ 1;
+        if (ep >= 0 && board.squares[ep + (board.side == WHITE ? -8 : 8)] == them * 6 + PAWN
+                && (Attacks.PAWN[them][ep] & board.pieces[board.side * 6 + PAWN]) != 0) {
+            board.epSquare = ep;
+        }
+        board.hash = board.computeHash();
+        return board;
+    }
+
+    /**
+     * Sets up position of UCI {@code position} command.
+     *
+     * @param command {@code position startpos|fen <fen> [moves <moves>]}.
+     * @throws IllegalArgumentException if command is malformed, FEN is not valid or any move is illegal.
+     */
+    public static Board fromPosition(String command) {
+        String[] tokens = command.trim().split("\\s+");
+        if (tokens.length < 2 || !tokens[0].equals("position")) {
+            throw new IllegalArgumentException("Not a position command");
+        }
+
+        Board board;
+        int i;
+        if (tokens[1].equals("startpos")) {
+            board = startpos();
+            i = 2;
+        } else if (tokens[1].equals("fen")) {
+            i = 2;
+            StringBuilder fen = new StringBuilder();
+            while (i < tokens.length && !tokens[i].equals("moves")) {
+                fen.append(tokens[i++]).append(' ');
+            }
+            board = fromFen(fen.toString());
+        } else {
+            throw new IllegalArgumentException("Expected startpos or fen, got " + tokens[1]);
+        }
+
+        if (i < tokens.length) {
+            if (!tokens[i].equals("moves")) throw new IllegalArgumentException("Expected moves, got " + tokens[i]);
+            for (i++; i < tokens.length; i++) {
+                int move = board.parseMove(tokens[i]);
+                if (move == Move.NONE) throw new IllegalArgumentException("Illegal move " + tokens[i]);
+                board.makeMove(move);
+            }
+        }
+        return board;
+    }
+
+    private void validate() {
+        for (int color = WHITE; color <= BLACK; color++) {
+            if (Long.bitCount(pieces[color * 6 + KING]) != 1) {
+                throw new IllegalArgumentException((color == WHITE ? "White" : "Black") + " must have one king");
+            }
+        }
+        if (((pieces[PAWN] | pieces[6 + PAWN]) & (RANK_1 | RANK_8)) != 0) {
+            throw new IllegalArgumentException("Pawn on the first or the last rank");
+        }
+        if (isAttacked(kingSquare(side ^ 1), side)) {
+            throw new IllegalArgumentException("Side not to move is in check");
+        }
+    }
+
+    /**
+     * @return castling rights which are possible with kings and rooks on their squares.
+     */
+    private int possibleCastling() {
+        int possible = 0;
+        if (squares[4] == KING) {
+            if (squares[7] == ROOK) possible |= WHITE_SHORT;
+            if (squares[0] == ROOK) possible |= WHITE_LONG;
+        }
+        if (squares[60] == 6 + KING) {
+            if (squares[63] == 6 + ROOK) possible |= BLACK_SHORT;
+            if (squares[56] == 6 + ROOK) possible |= BLACK_LONG;
+        }
+        return possible;
+    }
+
+    public int getSideToMove() {
+        return side;
+    }
+
+    /**
+     * @return castling rights, bits {@link #WHITE_SHORT}, {@link #WHITE_LONG}, {@link #BLACK_SHORT} and
+     * {@link #BLACK_LONG}.
+     */
+    public int getCastling() {
+        return castling;
+    }
+
+    /**
+     * @return en passant target square, {@link #NONE} if en passant capture is not possible.
+     */
+    public int getEnPassant() {
+        return epSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return number of moves made since the board was set up.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return Zobrist hash of the position.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return piece on square, {@link #NONE} if square is empty.
+     */
+    public int pieceAt(int square) {
+        return squares[square];
+    }
+
+    public boolean isCheck() {
+        return isAttacked(kingSquare(side), side ^ 1);
+    }
+
+    /**
+     * Generates all legal moves.
+     *
+     * @param moves array of at least {@link #MAX_MOVES} length.
+     * @return number of moves written to {@code moves}.
+     */
+    public int legalMoves(int[] moves) {
+        int count = pseudoLegalMoves(moves);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            makeMove(move);
+            boolean valid = !isAttacked(kingSquare(side ^ 1), side);
+            unmakeMove();
+            if (valid) moves[legal++] = move;
+        }
+        return legal;
+    }
+
+    /**
+     * @param uci move in UCI notation, e.g. {@code e2e4}, {@code e1g1} or {@code e7e8q}.
+     * @return legal move, {@link Move#NONE} if move is malformed or not legal.
+     */
+    public int parseMove(String uci) {
+        int move = Move.parseUci(uci);
+        return move == -1 ? Move.NONE : legalMove(move);
+    }
+
+    /**
+     * @param move move with or without flags, e.g. parsed from engine output.
+     * @return legal move with the same squares and promotion, {@link Move#NONE} if there is none.
+     */
+    public int legalMove(int move) {
+        if (move == Move.NONE) return Move.NONE;
+        int from = Move.from(move), to = Move.to(move), promotion = Move.promotion(move);
+        int count = legalMoves(scratch);
+        for (int i = 0; i < count; i++) {
+            int legal = scratch[i];
+            if (Move.from(legal) == from && Move.to(legal) == to && Move.promotion(legal) == promotion) return legal;
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Makes move given in UCI notation if it is legal.
+     *
+     * @return whether move was legal and was made.
+     */
+    public boolean play(String uci) {
+        int move = parseMove(uci);
+        if (move == Move.NONE) return false;
+        makeMove(move);
+        return true;
+    }
+
+    /**
+     * Makes move with or without flags if it is legal.
+     *
+     * @return whether move was legal and was made.
+     */
+    public boolean play(int move) {
+        move = legalMove(move);
+        if (move == Move.NONE) return false;
+        makeMove(move);
+        return true;
+    }
+
+    /**
+     * Makes move generated by {@link #legalMoves(int[])} or returned by {@link #parseMove(String)} or
+     * {@link #legalMove(int)}.
+     */
+    public void makeMove(int move) {
+        if (ply == moveHistory.length) grow();
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        int us = side, them = us ^ 1;
+        int piece = squares[from];
+        int captured = flags == Move.EN_PASSANT ? them * 6 + PAWN : squares[to];
+
+        moveHistory[ply] = move;
+        capturedHistory[ply] = captured;
+        castlingHistory[ply] = castling;
+        epHistory[ply] = epSquare;
+        halfmoveHistory[ply] = halfmoveClock;
+        hashHistory[ply] = hash;
+        ply++;
+
+        if (epSquare >= 0) hash ^= Zobrist.EN_PASSANT[epSquare & 7];
+        if (flags == Move.EN_PASSANT) {
+            remove(to + (us == WHITE ? -8 : 8));
+        } else if (captured != NONE) {
+            remove(to);
+        }
+        remove(from);
+        int promotion = Move.promotion(move);
+        put(to, promotion == 0 ? piece : us * 6 + promotion);
+
+        if (flags == Move.CASTLING) {
+            int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookFrom];
+            remove(rookFrom);
+            put(rookTo, rook);
+        }
+
+        hash ^= Zobrist.CASTLING[castling];
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        hash ^= Zobrist.CASTLING[castling];
+
+        epSquare = NONE;
+        if (flags == Move.DOUBLE_PUSH) {
+            int ep = (from + to) >>> 1;
+            if ((Attacks.PAWN[us][ep] & pieces[them * 6 + PAWN]) != 0) {
+                epSquare = ep;
+                hash ^= Zobrist.EN_PASSANT[ep & 7];
+            }
+        }
+
+        halfmoveClock = piece == us * 6 + PAWN || captured != NONE ? 0 : halfmoveClock + 1;
+        if (us == BLACK) fullmoveNumber++;
+        side = them;
+        hash ^= Zobrist.BLACK_TO_MOVE;
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int)}.
+     */
+    public void unmakeMove() {
+        if (ply == 0) throw new IllegalStateException("No move to unmake");
+        ply--;
+        int move = moveHistory[ply];
+        int from = Move.from(move), to = Move.to(move), flags = Move.flags(move);
+        side ^= 1;
+        int us = side;
+
+        int piece = squares[to];
+        remove(to);
+        put(from, Move.promotion(move) == 0 ? piece : us * 6 + PAWN);
+
+        int captured = capturedHistory[ply];
+        if (flags == Move.EN_PASSANT) {
+            put(to + (us == WHITE ? -8 : 8), captured);
+        } else if (captured != NONE) {
+            put(to, captured);
+        }
+
+        if (flags == Move.CASTLING) {
+            int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookTo];
+            remove(rookTo);
+            put(rookFrom, rook);
+        }
+
+        castling = castlingHistory[ply];
+        epSquare = epHistory[ply];
+        halfmoveClock = halfmoveHistory[ply];
+        hash = hashHistory[ply];
+        if (us == BLACK) fullmoveNumber--;
+    }
+
+    /**
+     * Counts leaf nodes of legal move tree of {@code depth}, used to verify move generation.
+     */
+    public long perft(int depth) {
+        if (depth <= 0) return 1;
+        return perft(depth, new int[depth + 1][MAX_MOVES]);
+    }
+
+    private long perft(int depth, int[][] moveLists) {
+        int[] moves = moveLists[depth];
+        int count = legalMoves(moves);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            nodes += perft(depth - 1, moveLists);
+            unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return move made at {@code ply}, which is lower than {@link #getPly()}.
+     */
+    int moveAt(int ply) {
+        return moveHistory[ply];
+    }
+
+    /**
+     * Returns the shortest {@code position} command of this position which lets engine detect repetitions: FEN of
+     * position after the last capture or pawn move, followed by moves played since.
+     */
+    public String positionCommand() {
+        int reversible = Math.min(halfmoveClock, ply);
+        for (int i = 0; i < reversible; i++) {
+            unmakeMove();
+        }
+
+        StringBuilder command = new StringBuilder(100 + reversible * 6).append("position fen ");
+        appendFenPosition(command);
+        command.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        if (reversible > 0) command.append(" moves");
+        for (int i = 0; i < reversible; i++) {
+            int move = moveHistory[ply];
+            command.append(' ').append(Move.toUci(move));
+            makeMove(move);
+        }
+        return command.toString();
+    }
+
+    /**
+     * @return position in FEN.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        appendFenPosition(fen);
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
+
+    /**
+     * Returns key which is the same for the same position regardless of how it was given, e.g.
+     * {@code position startpos moves e2e4} and {@code position fen} of the position after {@code e2e4}. Key contains
+     * FEN without fullmove number, and hash of positions since the last capture or pawn move, because engines use them
+     * to detect repetitions.
+     */
+    public String positionKey() {
+        StringBuilder key = new StringBuilder(100);
+        appendFenPosition(key);
+        key.append(' ').append(halfmoveClock);
+
+        int reversible = Math.min(halfmoveClock, ply);
+        if (reversible > 0) {
+            long history = 0;
+            for (int i = ply - reversible; i < ply; i++) {
+                history += hashHistory[i];
+            }
+            key.append(' ').append(Long.toHexString(history));
+        }
+        return key.toString();
+    }
+
+    private void appendFenPosition(StringBuilder fen) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = squares[rank * 8 + file];
+                if (piece == NONE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) fen.append(empty);
+                empty = 0;
+                fen.append(PIECE_LETTERS.charAt(piece));
+            }
+            if (empty > 0) fen.append(empty);
+            if (rank > 0) fen.append('/');
+        }
+
+        fen.append(side == WHITE ? " w " : " b ");
+        if (castling == 0) fen.append('-');
+        for (int i = 0; i < 4; i++) {
+            if ((castling & (1 << i)) != 0) fen.append("KQkq".charAt(i));
+        }
+        fen.append(' ').append(epSquare == NONE ? "-" : Move.square(epSquare));
+    }
+
+    /**
+     * @return Zobrist hash computed from scratch.
+     */
+    long computeHash() {
+        long hash = 0;
+        for (int square = 0; square < 64; square++) {
+            if (squares[square] != NONE) hash ^= Zobrist.PIECE[squares[square]][square];
+        }
+        hash ^= Zobrist.CASTLING[castling];
+        if (epSquare >= 0) hash ^= Zobrist.EN_PASSANT[epSquare & 7];
+        if (side == BLACK) hash ^= Zobrist.BLACK_TO_MOVE;
+        return hash;
+    }
+
+    /**
+     * Generates moves which may leave own king in check.
+     */
+    private int pseudoLegalMoves(int[] moves) {
+        int count = 0;
+        int us = side, them = us ^ 1;
+        long own = colors[us], enemy = colors[them], free = ~(own | enemy);
+        int up = us == WHITE ? 8 : -8;
+        long lastRank = us == WHITE ? RANK_8 : RANK_1;
+        int startRank = us == WHITE ? 1 : 6;
+
+        for (long pawns = pieces[us * 6 + PAWN]; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            int to = from + up;
+            if ((free & (1L << to)) != 0) {
+                if ((lastRank & (1L << to)) != 0) {
+                    count = addPromotions(moves, count, from, to);
+                } else {
+                    moves[count++] = Move.of(from, to);
+                    if ((from >>> 3) == startRank && (free & (1L << (to + up))) != 0) {
+                        moves[count++] = Move.of(from, to + up, 0, Move.DOUBLE_PUSH);
+                    }
+                }
+            }
+            for (long targets = Attacks.PAWN[us][from] & enemy; targets != 0; targets &= targets - 1) {
+                int target = Long.numberOfTrailingZeros(targets);
+                if ((lastRank & (1L << target)) != 0) {
+                    count = addPromotions(moves, count, from, target);
+                } else {
+                    moves[count++] = Move.of(from, target);
+                }
+            }
+            if (epSquare >= 0 && (Attacks.PAWN[us][from] & (1L << epSquare)) != 0) {
+                moves[count++] = Move.of(from, epSquare, 0, Move.EN_PASSANT);
+            }
+        }
+
+        long occupied = own | enemy;
+        for (long knights = pieces[us * 6 + KNIGHT]; knights != 0; knights &= knights - 1) {
+            int from = Long.numberOfTrailingZeros(knights);
+            count = addMoves(moves, count, from, Attacks.KNIGHT[from] & ~own);
+        }
+        for (long bishops = pieces[us * 6 + BISHOP] | pieces[us * 6 + QUEEN]; bishops != 0; bishops &= bishops - 1) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            count = addMoves(moves, count, from, Attacks.bishop(from, occupied) & ~own);
+        }
+        for (long rooks = pieces[us * 6 + ROOK] | pieces[us * 6 + QUEEN]; rooks != 0; rooks &= rooks - 1) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            count = addMoves(moves, count, from, Attacks.rook(from, occupied) & ~own);
+        }
+        int king = kingSquare(us);
+        count = addMoves(moves, count, king, Attacks.KING[king] & ~own);
+
+        int shortRight = us == WHITE ? WHITE_SHORT : BLACK_SHORT, longRight = us == WHITE ? WHITE_LONG : BLACK_LONG;
+        if ((castling & (shortRight | longRight)) != 0 && !isAttacked(king, them)) {
+            if ((castling & shortRight) != 0 && squares[king + 1] == NONE && squares[king + 2] == NONE
+                    && !isAttacked(king + 1, them)) {
+                moves[count++] = Move.of(king, king + 2, 0, Move.CASTLING);
+            }
+            if ((castling & longRight) != 0 && squares[king - 1] == NONE && squares[king - 2] == NONE
+                    && squares[king - 3] == NONE && !isAttacked(king - 1, them)) {
+                moves[count++] = Move.of(king, king - 2, 0, Move.CASTLING);
+            }
+        }
+        return count;
+    }
+
+    private static int addMoves(int[] moves, int count, int from, long targets) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+        }
+        return count;
+    }
+
+    private static int addPromotions(int[] moves, int count, int from, int to) {
+        for (int type = QUEEN; type >= KNIGHT; type--) {
+            moves[count++] = Move.of(from, to, type, Move.NORMAL);
+        }
+        return count;
+    }
+
+    /**
+     * @return whether {@code square} is attacked by any piece of {@code color}.
+     */
+    public boolean isAttacked(int square, int color) {
+        int base = color * 6;
+        long occupied = colors[WHITE] | colors[BLACK];
+        return (Attacks.PAWN[color ^ 1][square] & pieces[base + PAWN]) != 0
+                || (Attacks.KNIGHT[square] & pieces[base + KNIGHT]) != 0
+                || (Attacks.KING[square] & pieces[base + KING]) != 0
+                || (Attacks.bishop(square, occupied) & (pieces[base + BISHOP] | pieces[base + QUEEN])) != 0
+                || (Attacks.rook(square, occupied) & (pieces[base + ROOK] | pieces[base + QUEEN])) != 0;
+    }
+
+    private int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[color * 6 + KING]);
+    }
+
+    private void put(int square, int piece) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        colors[piece / 6] |= bit;
+        squares[square] = piece;
+        hash ^= Zobrist.PIECE[piece][square];
+    }
+
+    private void remove(int square) {
+        int piece = squares[square];
+        long bit = 1L << square;
+        pieces[piece] &= ~bit;
+        colors[piece / 6] &= ~bit;
+        squares[square] = NONE;
+        hash ^= Zobrist.PIECE[piece][square];
+    }
+
+    private void grow() {
+        int length = moveHistory.length * 2;
+        moveHistory = java.util.Arrays.copyOf(moveHistory, length);
+        capturedHistory = java.util.Arrays.copyOf(capturedHistory, length);
+        castlingHistory = java.util.Arrays.copyOf(castlingHistory, length);
+        epHistory = java.util.Arrays.copyOf(epHistory, length);
+        halfmoveHistory = java.util.Arrays.copyOf(halfmoveHistory, length);
+        hashHistory = java.util.Arrays.copyOf(hashHistory, length);
+    }
+}
@@ -0,0 +1,96 @@
+package chess.board;
+
+import java.util.Arrays;
+
+/**
+ * Line of moves with a board at current ply. Moves after current ply are kept when going back, so client can step
+ * through the game, until a different move is played.
+ */
+public final class Game {
+
+    private final Board board;
+
+    /**
+     * moves of the line, the first {@link Board#getPly()} of them are made on {@link #board}.
+     */
+    private int[] moves;
+
+    private int length;
+
+    /**
+     * @param board position of the game, moves already made on it are the beginning of the line.
+     */
+    public Game(Board board) {
+        this.board = board;
+        this.length = board.getPly();
+        this.moves = new int[Math.max(64, length * 2)];
+        for (int ply = 0; ply < length; ply++) {
+            moves[ply] = board.moveAt(ply);
+        }
+    }
+
+    /**
+     * @return board at current ply, must not be changed.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    public int getPly() {
+        return board.getPly();
+    }
+
+    /**
+     * @return number of moves of the line.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Plays move at current ply. Moves after it are dropped unless they start with the same move.
+     *
+     * @param uci move in UCI notation.
+     * @return whether move was legal.
+     */
+    public boolean play(String uci) {
+        int move = board.parseMove(uci);
+        if (move == Move.NONE) return false;
+
+        int ply = board.getPly();
+        if (ply == length || moves[ply] != move) {
+            if (ply == moves.length) moves = Arrays.copyOf(moves, moves.length * 2);
+            moves[ply] = move;
+            length = ply + 1;
+        }
+        board.makeMove(move);
+        return true;
+    }
+
+    /**
+     * Takes back moves and drops them from the line.
+     *
+     * @return whether there were enough moves to take back.
+     */
+    public boolean takeback(int plies) {
+        if (plies < 0 || !goTo(board.getPly() - plies)) return false;
+        length = board.getPly();
+        return true;
+    }
+
+    /**
+     * Goes back or forward in the line, moves are kept.
+     *
+     * @return whether {@code ply} is in the line.
+     */
+    public boolean goTo(int ply) {
+        if (ply < 0 || ply > length) return false;
+        while (board.getPly() > ply) {
+            board.unmakeMove();
+        }
+        while (board.getPly() < ply) {
+            board.makeMove(moves[board.getPly()]);
+        }
+        return true;
+    }
+}
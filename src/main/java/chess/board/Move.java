@@ -0,0 +1,129 @@
+package chess.board;
+
+/**
+ * Moves encoded in a single {@code int}, so move lists are plain arrays: origin square in bits 0-5, target square in
+ * bits 6-11, promotion piece type in bits 12-14 and {@link #flags(int) flags} in bits 15-16. Squares are numbered
+ * {@code a1 = 0, b1 = 1, ..., h8 = 63}.
+ * <p>
+ * This is the only move encoding of the server. Moves read from engine output or from opening book have no flags,
+ * they fit into 16 bits and {@link Board#legalMove(int)} finds the legal move with flags for them.
+ */
+public final class Move {
+
+    /**
+     * no move, never generated because origin and target squares are the same. Null move {@code 0000} of UCI.
+     */
+    public static final int NONE = 0;
+
+    static final int NORMAL = 0;
+
+    static final int DOUBLE_PUSH = 1;
+
+    static final int EN_PASSANT = 2;
+
+    static final int CASTLING = 3;
+
+    private static final String PROMOTIONS = " nbrq";
+
+    private Move() {
+    }
+
+    static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    /**
+     * @param promotion promoted piece type, {@link Board#KNIGHT} to {@link Board#QUEEN}, or {@code 0}.
+     * @return move without flags.
+     */
+    public static int of(int from, int to, int promotion) {
+        return from | to << 6 | promotion << 12;
+    }
+
+    static int of(int from, int to, int promotion, int flags) {
+        return from | to << 6 | promotion << 12 | flags << 15;
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return promoted piece type, {@link Board#KNIGHT} to {@link Board#QUEEN}, or {@code 0} if move is not a
+     * promotion.
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    static int flags(int move) {
+        return (move >>> 15) & 0x3;
+    }
+
+    /**
+     * @return move in UCI notation, e.g. {@code e2e4}, {@code e1g1} or {@code e7e8q}, {@code 0000} for
+     * {@link #NONE}.
+     */
+    public static String toUci(int move) {
+        if (move == NONE) return "0000";
+        String uci = square(from(move)) + square(to(move));
+        int promotion = promotion(move);
+        return promotion == 0 ? uci : uci + PROMOTIONS.charAt(promotion);
+    }
+
+    /**
+     * @return square name, e.g. {@code e4}.
+     */
+    public static String square(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+
+    /**
+     * Parses move in UCI notation from {@code text} between {@code start} (inclusive) and {@code end} (exclusive).
+     *
+     * @return move without flags, {@link #NONE} for null move {@code 0000}, or {@code -1} if text is not a move.
+     */
+    public static int parseUci(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length == 4 && text.charAt(start) == '0' && text.charAt(start + 1) == '0'
+                && text.charAt(start + 2) == '0' && text.charAt(start + 3) == '0') {
+            return NONE;
+        }
+        if (length != 4 && length != 5) return -1;
+
+        int from = parseSquare(text, start), to = parseSquare(text, start + 2);
+        if (from < 0 || to < 0) return -1;
+
+        int promotion = 0;
+        if (length == 5) {
+            promotion = parsePromotion(Character.toLowerCase(text.charAt(start + 4)));
+            if (promotion == 0) return -1;
+        }
+        return of(from, to, promotion);
+    }
+
+    public static int parseUci(CharSequence text) {
+        return parseUci(text, 0, text.length());
+    }
+
+    /**
+     * @return square of name like {@code e4} at {@code offset}, {@code -1} if it is not a square name.
+     */
+    static int parseSquare(CharSequence text, int offset) {
+        if (text.length() < offset + 2) return -1;
+        int file = text.charAt(offset) - 'a', rank = text.charAt(offset + 1) - '1';
+        return file < 0 || file > 7 || rank < 0 || rank > 7 ? -1 : rank * 8 + file;
+    }
+
+    /**
+     * @return promotion piece type of UCI letter, {@code 0} if it is not a promotion letter.
+     */
+    static int parsePromotion(char letter) {
+        int type = PROMOTIONS.indexOf(letter);
+        return Math.max(type, 0);
+    }
+}
@@ -0,0 +1,46 @@
+package chess.board;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys of Zobrist hashing. Keys are generated from a fixed seed, so hashes are the same after restart and
+ * can be stored.
+ */
+final class Zobrist {
+
+    /**
+     * keys of piece on square, by piece and square.
+     */
+    static final long[][] PIECE = new long[12][64];
+
+    /**
+     * keys of castling rights, by castling rights bits.
+     */
+    static final long[] CASTLING = new long[16];
+
+    /**
+     * keys of en passant file.
+     */
+    static final long[] EN_PASSANT = new long[8];
+
+    static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x2F0D3A5C_6B1E4987L);
+        for (long[] squares : PIECE) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+}
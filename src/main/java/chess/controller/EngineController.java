@@ -1,12 +1,29 @@
 package chess.controller;
 
+import chess.Constants;
+import chess.board.Board;
 import chess.engine.EngineHandler;
+import chess.filter.JwtFilter;
+import chess.model.AnalyseModel;
+import chess.model.AnalysisModel;
+import chess.model.BatchModel;
 import chess.model.EngineModel;
 import chess.model.MessageModel;
 import chess.server.ServerLogger;
+import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles all engine related routes
@@ -19,58 +36,189 @@ public class EngineController {
     @Autowired
     private EngineHandler engineHandler;
 
-    private final ServerLogger logger = new ServerLogger(this.getClass().getName(), true);
+    private final ServerLogger logger;
+
+    public EngineController(Constants constantsProperties) {
+        this.logger = new ServerLogger(this.getClass().getName(), constantsProperties.getLOG());
+    }
 
     /**
-     * Starts engine with name
+     * Starts engine with name. Request thread is released while engine is starting, response is sent when engine is
+     * ready.
      * @param engine StartEngineModel with name of the engine that user wants to start.
      * @return information whether engine was started.
      */
     @PostMapping(value = "/start", consumes=MediaType.APPLICATION_JSON_VALUE,
             produces=MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    String start(@RequestBody EngineModel engine) {
+    CompletableFuture<String> start(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token,
+                                    @RequestBody EngineModel engine) {
 
         logger.log("info", "Start engine request");
-        boolean info = engineHandler.startEngine(engine);
-
-        if(info){
-            logger.log("info", String.format("Engine %s started", engine.getName()));
-            return String.format("Engine %s started", engine.getName());
-        } else {
-            logger.log("info", String.format("Can't start engine %s", engine.getName()));
-            return String.format("Can't start engine %s", engine.getName());
-        }
+        return engineHandler.startEngine(token, engine).thenApply(info -> {
+            if(info){
+                logger.log("info", "Engine %s started", engine.getName());
+                return String.format("Engine %s started", engine.getName());
+            } else {
+                logger.log("info", "Can't start engine %s", engine.getName());
+                return String.format("Can't start engine %s", engine.getName());
+            }
+        });
     }
 
     /**
-     * This method stops currently running engine.
+     * This method stops currently running engine of the user.
      * @return whether the engine was stopped.
      */
     @GetMapping(value = "/stop")
-    public @ResponseBody String stop() {
+    public @ResponseBody String stop(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token) {
 
         logger.log("info", "Stop engine request");
-        engineHandler.stopEngine();
+        engineHandler.stopEngine(token);
         logger.log("info", "Engine stopped");
         return "Engine stopped";
     }
 
     /**
-     * This method send command to currently running engine.
+     * Returns id of the user analysis. Other users can watch the analysis by connecting to web socket with
+     * {@code spectate} query parameter set to this id.
+     * @return analysis id.
+     */
+    @GetMapping(value = "/analysis")
+    public @ResponseBody String analysis(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token) {
+        return engineHandler.getBroadcaster(token).getId();
+    }
+
+    /**
+     * This method send command to currently running engine of the user.
      * @return whether the engine was stopped.
      */
     @PostMapping(value = "/send", consumes=MediaType.APPLICATION_JSON_VALUE)
-    public @ResponseBody String send(@RequestBody MessageModel command) {
+    public @ResponseBody String send(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token,
+                                     @RequestBody MessageModel command) {
 
-        if(engineHandler.isEngineRunning()){
-            engineHandler.processRawCommand(command.getMsg());
+        if(engineHandler.isEngineRunning(token)){
+            engineHandler.processRawCommand(token, command.getMsg());
             return "Command sent";
         } else {
             logger.log("error", "Engine is not running - command ignored");
             return "Engine is not running";
         }
     }
+
+    /**
+     * This method analyses list of positions on several engines, which are not bound to the user engine.
+     * @param batch positions with search limits, either depth or movetime.
+     * @return stream of results as newline delimited JSON, in completion order.
+     */
+    @PostMapping(value = "/batch", consumes=MediaType.APPLICATION_JSON_VALUE,
+            produces=MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody batch(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token,
+                                       @RequestBody BatchModel batch) {
+
+        if (batch.getEngine() == null || batch.getFens() == null || batch.getFens().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing engine or positions");
+        }
+        for (String fen : batch.getFens()) {
+            validatePosition("position fen " + fen);
+        }
+
+        final String goCommand;
+        if (batch.getDepth() != null) {
+            goCommand = "go depth " + batch.getDepth();
+        } else if (batch.getMovetime() != null) {
+            goCommand = "go movetime " + batch.getMovetime();
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing depth or movetime");
+        }
+
+        logger.log("info", "Batch request with %d positions", batch.getFens().size());
+        int workers = batch.getWorkers() == null ? 0 : batch.getWorkers();
+
+        return out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            Gson gson = new Gson();
+            engineHandler.analyseBatch(token, batch.getEngine(), batch.getFens(), goCommand, workers, result -> {
+                synchronized (writer) {
+                    try {
+                        writer.write(gson.toJson(result));
+                        writer.write('\n');
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        };
+    }
+
+    /**
+     * This method analyses a single position on engine which is not bound to the user engine. Request thread is
+     * released during the search. Engine is stopped when {@code deadline} passes, and the best result found so far is
+     * returned.
+     * @param analyse position with search limits, at least one of depth, movetime, nodes or deadline.
+     * @return evaluation, principal variation and best move.
+     */
+    @PostMapping(value = "/analyse", consumes=MediaType.APPLICATION_JSON_VALUE,
+            produces=MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody CompletableFuture<AnalysisModel> analyse(@RequestAttribute(JwtFilter.TOKEN_ATTRIBUTE) String token,
+                                                                  @RequestBody AnalyseModel analyse) {
+
+        if (analyse.getEngine() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing engine");
+        }
+
+        StringBuilder position = new StringBuilder("position ");
+        position.append(analyse.getFen() == null ? "startpos" : "fen " + analyse.getFen());
+        if (analyse.getMoves() != null && !analyse.getMoves().isEmpty()) {
+            position.append(" moves ").append(String.join(" ", analyse.getMoves()));
+        }
+
+        StringBuilder go = new StringBuilder("go");
+        if (analyse.getDepth() != null) go.append(" depth ").append(analyse.getDepth());
+        if (analyse.getMovetime() != null) go.append(" movetime ").append(analyse.getMovetime());
+        if (analyse.getNodes() != null) go.append(" nodes ").append(analyse.getNodes());
+        if (go.length() == 2) {
+            if (analyse.getDeadline() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing depth, movetime, nodes or deadline");
+            }
+            go.append(" infinite");
+        }
+
+        validatePosition(position.toString());
+
+        long deadline = analyse.getDeadline() == null ? Long.MAX_VALUE : analyse.getDeadline();
+        String fen = analyse.getFen();
+        return engineHandler.analyse(token, analyse.getEngine(), position.toString(), go.toString(), deadline)
+                .thenApply(result -> {
+                    result.setFen(fen);
+                    return result;
+                });
+    }
+
+    /**
+     * Rejects position with invalid FEN or illegal move, so it never reaches engine.
+     * @param position {@code position} command.
+     */
+    private static void validatePosition(String position) {
+        if (position.indexOf('\n') >= 0 || position.indexOf('\r') >= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid position");
+        }
+        try {
+            Board.fromPosition(position);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid position: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method returns evaluation cache counters.
+     * @return hit, miss and shared search counters, or empty response if cache is disabled.
+     */
+    @GetMapping(value = "/cache", produces=MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody EngineHandler.CacheStats cacheStats() {
+        return engineHandler.getCacheStats();
+    }
 }
 
 
@@ -1,12 +1,16 @@
 package chess.controller;
 
+import chess.Constants;
 import chess.model.MessageModel;
 import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
 import chess.server.ServerStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 /**
  * Handles all receiver related routes
  */
@@ -15,7 +19,11 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/receiver")
 public class ReceiverController {
 
-    private final ServerLogger logger = new ServerLogger(this.getClass().getName(), true);
+    private final ServerLogger logger;
+
+    public ReceiverController(Constants constantsProperties) {
+        this.logger = new ServerLogger(this.getClass().getName(), constantsProperties.getLOG());
+    }
 
     @GetMapping(path="/hello")
     public @ResponseBody
@@ -24,4 +32,14 @@ public class ReceiverController {
         logger.log("info", "Check connection request");
         return "Hello";
     }
+
+    /**
+     * Returns engine and web socket metrics: latency histograms, counters, queue gauges and stats of running engine
+     * processes. Rates and cpu usage are computed since the previous call.
+     */
+    @GetMapping(path="/metrics", produces=MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    Map<String, Object> metrics() {
+        return ServerMetrics.snapshot();
+    }
 }
\ No newline at end of file
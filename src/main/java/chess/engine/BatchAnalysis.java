@@ -0,0 +1,147 @@
+package chess.engine;
+
+import chess.model.AnalysisModel;
+import chess.server.ExecutionThreads;
+import chess.server.ServerLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Analyses list of positions on several engines at the same time. Every worker thread takes positions from the shared
+ * queue and passes results to consumer in completion order.
+ */
+class BatchAnalysis {
+
+    /**
+     * time in ms between two checks whether engine is still running.
+     */
+    private static final long ENGINE_CHECK_INTERVAL = 1000;
+
+    private final EngineHandler engineHandler;
+
+    /**
+     * token of the user who asked for the batch.
+     */
+    private final String owner;
+
+    private final String enginePath;
+
+    private final Queue<String> fens;
+
+    private final String goCommand;
+
+    private final int workers;
+
+    private final Consumer<AnalysisModel> results;
+
+    private volatile boolean cancelled = false;
+
+    private final ServerLogger logger;
+
+    BatchAnalysis(EngineHandler engineHandler, String owner, String enginePath, List<String> fens, String goCommand,
+                  int workers, Consumer<AnalysisModel> results, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.engineHandler = engineHandler;
+        this.owner = owner;
+        this.enginePath = enginePath;
+        this.fens = new ConcurrentLinkedQueue<>(fens);
+        this.goCommand = goCommand;
+        this.workers = Math.max(1, Math.min(workers, fens.size()));
+        this.results = results;
+    }
+
+    /**
+     * Starts worker threads and waits until all positions are analysed, or consumer throws exception.
+     *
+     * @param executionThreads creates worker threads.
+     */
+    void run(ExecutionThreads executionThreads) {
+        logger.log("info", "Batch of %d positions on %d engines", fens.size(), workers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = executionThreads.newThread("batch-" + i, this::work);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        EngineThread engineThread = null;
+        try {
+            String fen;
+            while (!cancelled && (fen = fens.poll()) != null) {
+                if (engineThread == null) {
+                    engineThread = engineHandler.acquireEngine(enginePath);
+                }
+
+                AnalysisModel result;
+                if (engineThread == null) {
+                    result = new AnalysisModel(fen);
+                    result.setError("Can't start engine");
+                } else {
+                    result = analyse(engineThread, fen);
+                    if (!engineThread.isRunning()) {
+                        engineThread = null;
+                    }
+                }
+
+                try {
+                    results.accept(result);
+                } catch (RuntimeException e) {
+                    logger.log("error", "Batch cancelled: " + e.getMessage());
+                    cancelled = true;
+                }
+            }
+        } finally {
+            if (engineThread != null) {
+                engineHandler.releaseEngine(enginePath, engineThread);
+            }
+        }
+    }
+
+    /**
+     * Analyses position as batch job. Search preempted by interactive search is repeated.
+     */
+    private AnalysisModel analyse(EngineThread engineThread, String fen) {
+        while (true) {
+            EngineSearch search = new EngineSearch(new AnalysisModel(fen));
+            CompletableFuture<AnalysisModel> done = search.result();
+            JobScheduler.Job job = engineHandler.schedule(owner, JobScheduler.Priority.BATCH, engineThread,
+                    () -> search.start(engineThread, "position fen " + fen, goCommand));
+
+            while (!cancelled) {
+                try {
+                    AnalysisModel result = done.get(ENGINE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (!job.isPreempted()) return result;
+                    break;
+                } catch (TimeoutException e) {
+                    if (!engineThread.isRunning()) break;
+                } catch (InterruptedException | ExecutionException e) {
+                    break;
+                }
+            }
+            if (!cancelled && job.isPreempted() && engineThread.isRunning()) continue;
+
+            job.close();
+            done.cancel(false);
+            AnalysisModel result = search.partial();
+            result.setError(cancelled ? "Cancelled" : "Engine stopped");
+            return result;
+        }
+    }
+}
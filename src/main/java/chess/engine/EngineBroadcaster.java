@@ -0,0 +1,83 @@
+package chess.engine;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Passes output of the user engine to subscribers, e.g. web socket of the user and spectators of the analysis.
+ * Subscribers are kept in copy on write list, so engine reader never takes a lock and never copies subscribers while
+ * passing a line. Broadcaster stays the same when engine is restarted.
+ */
+public class EngineBroadcaster implements EngineThread.EngineOutputListener {
+
+    /**
+     * public id of the analysis, which can be shared with spectators instead of user token.
+     */
+    private final String id = UUID.randomUUID().toString();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed = false;
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Adds subscriber. Subscriber of closed broadcaster is notified immediately with {@link Subscriber#onClosed()}.
+     * @param subscriber subscriber to add.
+     */
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        if (closed && subscribers.remove(subscriber)) {
+            subscriber.onClosed();
+        }
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Called every time there is some output from engine. Passes line to all subscribers.
+     * @param output engine output line.
+     */
+    @Override
+    public void onEngineOutput(String output) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.onEngineOutput(output);
+        }
+    }
+
+    /**
+     * Removes all subscribers and notifies them that analysis is over.
+     */
+    void close() {
+        closed = true;
+        for (Subscriber subscriber : subscribers) {
+            if (subscribers.remove(subscriber)) {
+                subscriber.onClosed();
+            }
+        }
+    }
+
+    /**
+     * Receives engine output of a single analysis.
+     */
+    public interface Subscriber extends EngineThread.EngineOutputListener {
+
+        @Override
+        void onEngineOutput(String output);
+
+        /**
+         * Called when session of the analysis owner is closed.
+         */
+        default void onClosed() {
+        }
+    }
+}
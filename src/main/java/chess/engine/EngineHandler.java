@@ -1,41 +1,263 @@
 package chess.engine;
 
+import chess.Constants;
+import chess.board.Board;
+import chess.board.Game;
+import chess.board.Move;
+import chess.model.AnalysisModel;
 import chess.model.EngineModel;
+import chess.server.ExecutionThreads;
 import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
+import chess.server.ServerStatus;
 import org.springframework.stereotype.Component;
 
-import java.util.Observable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * Provides high level interface for managing chess engine.
+ * Provides high level interface for managing chess engines. Every user, identified by token, has a separate
+ * engine.
  */
 @Component
-public class EngineHandler {
+public class EngineHandler implements ServerStatus.SessionListener {
 
-    private EngineThread engineThread = null;
+    /**
+     * maximal time in ms for started engine to answer {@code uci}/{@code isready}.
+     */
+    private static final long READY_TIMEOUT = 10_000;
+
+    /**
+     * maximal time in ms for engine to answer {@code stop} with {@code bestmove}.
+     */
+    private static final long STOP_TIMEOUT = 1_000;
+
+    /**
+     * share of every user in {@link JobScheduler}, all users are equal.
+     */
+    private static final int DEFAULT_WEIGHT = 1;
+
+    /**
+     * engine sessions by user token.
+     */
+    private final Map<String, EngineSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * engine output broadcasters by analysis id.
+     */
+    private final Map<String, EngineBroadcaster> broadcasters = new ConcurrentHashMap<>();
+
+    /**
+     * {@code config.LOG}, passed to loggers of engines and schedulers.
+     */
+    private final boolean log;
+
+    private final ServerLogger logger;
+
+    private final EngineThread.IoMode ioMode;
+
+    /**
+     * pools of ready engines by engine path.
+     */
+    private final Map<String, EnginePool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * cache of finished searches shared by all users, {@code null} if disabled.
+     */
+    private final EvaluationCache cache;
+
+    private final int batchWorkers;
+
+    private final ExecutionThreads threads;
+
+    /**
+     * takes engines for analyses which are not bound to any user, starting engine may block.
+     */
+    private final ExecutorService acquirer;
+
+    private final long maxAnalyseDeadline;
+
+    /**
+     * records i/o of all engines, {@code null} if {@code config.TRANSCRIPT_DIR} is not set.
+     */
+    private final TranscriptRecorder recorder;
+
+    /**
+     * shares host CPUs between engines, {@code null} if {@code config.ENGINE_SCHEDULER} is disabled.
+     */
+    private final ResourceScheduler scheduler;
 
-    public final EngineObservable observable = new EngineObservable();
+    /**
+     * decides which searches run when there are more searches than {@code config.JOB_SLOTS}.
+     */
+    private final JobScheduler jobs;
 
-    private final ServerLogger logger = new ServerLogger(this.getClass().getName(), true);
+    /**
+     * answers {@code go} in book positions, {@code null} if {@code config.BOOK_FILE} is not set.
+     */
+    private final OpeningBook book;
 
     /**
-     * Starts new engine thread. If there is any running engine then it will be stopped.
+     * searches positions likely to come next for sessions which enabled it, {@code null} if
+     * {@code config.SPECULATION_CPUS} is {@code 0}.
+     */
+    private final Speculator speculator;
+
+    public EngineHandler(Constants constantsProperties, ExecutionThreads threads) {
+        this.log = constantsProperties.getLOG();
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.threads = threads;
+        this.acquirer = threads.newExecutor("engine-acquire");
+        this.maxAnalyseDeadline = constantsProperties.getMAX_ANALYSE_DEADLINE();
+        this.batchWorkers = constantsProperties.getBATCH_WORKERS();
+        this.ioMode = EngineThread.IoMode.valueOf(constantsProperties.getENGINE_IO_MODE());
+        int cacheSize = constantsProperties.getEVAL_CACHE_SIZE();
+        this.cache = cacheSize > 0 ? new EvaluationCache(cacheSize) : null;
+        this.recorder = openRecorder(constantsProperties);
+        this.book = openBook(constantsProperties);
+        int speculationCpus = constantsProperties.getSPECULATION_CPUS();
+        int speculationMoves = constantsProperties.getSPECULATION_MOVES();
+        this.speculator = speculationCpus > 0 && speculationMoves > 0
+                ? new Speculator(this, acquirer, speculationCpus, speculationMoves)
+                : null;
+        if (speculator != null) ServerMetrics.registerGauge("speculationsRunning", speculator::getRunning);
+        this.jobs = new JobScheduler(constantsProperties.getJOB_SLOTS(), constantsProperties.getJOB_MAX_MOVETIME(),
+                constantsProperties.getJOB_MAX_NODES(), log);
+        ServerMetrics.registerGauge("jobsQueued", jobs::getQueued);
+        ServerMetrics.registerGauge("jobsRunning", jobs::getRunning);
+        this.scheduler = constantsProperties.getENGINE_SCHEDULER()
+                ? new ResourceScheduler(constantsProperties.getENGINE_CPUS(), constantsProperties.getENGINE_MAX_HASH(),
+                constantsProperties.getENGINE_AFFINITY(), threads, log)
+                : null;
+
+        for (String pool : constantsProperties.getENGINE_POOL().split(",")) {
+            if (pool.isBlank()) continue;
+
+            String[] pathAndSize = pool.trim().split(":");
+            EnginePool enginePool = new EnginePool(pathAndSize[0], Integer.parseInt(pathAndSize[1]), ioMode,
+                    threads, recorder, scheduler, log);
+            pools.put(enginePool.getEnginePath(), enginePool);
+            enginePool.fill();
+        }
+    }
+
+    private TranscriptRecorder openRecorder(Constants constantsProperties) {
+        String directory = constantsProperties.getTRANSCRIPT_DIR();
+        if (directory.isBlank()) return null;
+        try {
+            return new TranscriptRecorder(Paths.get(directory), constantsProperties.getTRANSCRIPT_FILE_SIZE(),
+                    constantsProperties.getTRANSCRIPT_FILES(), log);
+        } catch (IOException | RuntimeException e) {
+            logger.log("error", "Transcripts are not recorded: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    private OpeningBook openBook(Constants constantsProperties) {
+        String file = constantsProperties.getBOOK_FILE();
+        if (file.isBlank()) return null;
+        try {
+            String randomFile = constantsProperties.getBOOK_RANDOM_FILE();
+            OpeningBook book = new OpeningBook(Paths.get(file), randomFile.isBlank() ? null : Paths.get(randomFile));
+            logger.log("status", "Opening book %s with %d entries", file, book.getSize());
+            return book;
+        } catch (IOException | RuntimeException e) {
+            logger.log("error", "Opening book is not used: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts new engine thread for user. If user has any running engine then it will be stopped. Engine is taken from
+     * the pool if there is idle engine with the same path. New engine is connected to user output after it answers
+     * {@code uci}/{@code isready}, so handshake output is not sent to user.
+     * @param token user token.
      * @param engine engine to start.
+     * @return future which completes with {@code true} when engine is ready, or {@code false} if engine could not be
+     * started in {@link #READY_TIMEOUT} ms.
      */
-    public boolean startEngine(EngineModel engine) {
-        stopEngine();
-        engineThread = new EngineThread(engine.getPath());
-        engineThread.addListeners(observable);
-        engineThread.start();
+    public CompletableFuture<Boolean> startEngine(String token, EngineModel engine) {
+        EngineSession session = getSession(token);
+        EngineThread engineThread;
+        synchronized (session) {
+            stopEngine(session);
+            session.enginePath = engine.getPath();
+
+            EnginePool pool = pools.get(engine.getPath());
+            engineThread = pool == null ? null : pool.lease();
+            if (engineThread != null) {
+                engineThread.addListeners(session.broadcaster);
+                session.engineThread = engineThread;
+                session.pool = pool;
+                logger.log("info", "Engine leased from pool");
+                return CompletableFuture.completedFuture(true);
+            }
+
+            engineThread = new EngineThread(engine.getPath(), ioMode, threads, recorder, scheduler, log);
+            engineThread.start();
+            session.engineThread = engineThread;
+            session.pool = null;
+        }
 
-        return waitForEngine();
+        EngineThread started = engineThread;
+        return started.makeReady("uci")
+                .orTimeout(READY_TIMEOUT, TimeUnit.MILLISECONDS)
+                .handle((ready, e) -> {
+                    synchronized (session) {
+                        if (session.engineThread != started) return false;
+                        if (e == null) {
+                            started.addListeners(session.broadcaster);
+                            return true;
+                        }
+                        logger.log("error", "Engine %s did not get ready", engine.getPath());
+                        session.engineThread = null;
+                        started.setShouldStop(true);
+                        return false;
+                    }
+                });
     }
 
     /**
-     * Stops currently running engine thread.
+     * Stops engine thread of the user.
+     * @param token user token.
      */
-    public void stopEngine() {
-        if (!isEngineRunning()) return;
+    public void stopEngine(String token) {
+        EngineSession session = sessions.get(token);
+        if (session == null) return;
+
+        synchronized (session) {
+            stopEngine(session);
+        }
+    }
+
+    private void stopEngine(EngineSession session) {
+        EngineThread engineThread = session.engineThread;
+        if (engineThread == null) return;
+
+        abortSearch(session, engineThread);
+        cancelSpeculation(session);
+        if (session.job != null) {
+            session.job.close();
+            session.job = null;
+        }
+        engineThread.removeListener(session.broadcaster);
+        session.engineThread = null;
+        if (session.pool != null) {
+            session.pool.release(engineThread);
+            session.pool = null;
+            return;
+        }
 
         engineThread.setShouldStop(true);
         try {
@@ -43,53 +265,656 @@ public class EngineHandler {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        engineThread = null;
     }
 
-    public boolean isEngineRunning() {
-        return engineThread != null && engineThread.isRunning();
+    public boolean isEngineRunning(String token) {
+        EngineSession session = sessions.get(token);
+        return session != null && session.isEngineRunning();
     }
 
-    public boolean waitForEngine(){
-        if(engineThread != null){
-            logger.log("info", "Waiting for engine status info");
-            while(engineThread.getInfo() == null || engineThread.getInfo().equals("stopped")) {
-                logger.log("info", engineThread.getInfo());
+    /**
+     * Pass {@code command} to engine of the user. Game commands {@code move}, {@code takeback} and {@code ply} are
+     * passed as {@code position} command, see {@link #processPositionCommand(EngineSession, String)}. {@code go} in a
+     * position searched speculatively is answered by that search, see
+     * {@link #processSpeculativeCommand(EngineSession, EngineThread, String)}. If cache is enabled, then
+     * {@code go} command with cached result is answered from cache, and {@code go} command identical to a search
+     * running for another user waits for its result. Other {@code go} commands wait for a free slot in
+     * {@link JobScheduler}.
+     * @param token user token.
+     * @param command command to pass.
+     */
+    public void processRawCommand(String token, String command) {
+        EngineSession session = sessions.get(token);
+        EngineThread engineThread = session == null ? null : session.engineThread;
+        if (engineThread == null) {
+            System.err.println("Cant process command, engine is null");
+            return;
+        }
+
+        synchronized (session) {
+            String trimmed = processPositionCommand(session, command.trim());
+            if (trimmed == null) return;
+            if (book != null && processBookCommand(session, trimmed)) return;
+            if (speculator != null && processSpeculativeCommand(session, engineThread, trimmed)) return;
+            if (trimmed.startsWith("setoption ")) {
+                int value = trimmed.indexOf(" value ");
+                session.options.put(value < 0 ? trimmed : trimmed.substring(0, value), trimmed);
+            }
+            if (cache == null || !processCachedCommand(session, engineThread, trimmed)) {
+                send(session, engineThread, trimmed);
+            }
+        }
+    }
+
+    /**
+     * Keeps game of the session. {@code position} command starts a new game, which is continued with commands
+     * carrying only the change, so clients don't have to resend all moves:
+     * <ul>
+     *     <li>{@code move <move>} plays move in UCI notation,</li>
+     *     <li>{@code takeback [<plies>]} takes back the last move, or {@code plies} moves,</li>
+     *     <li>{@code ply <ply>} goes back or forward to {@code ply} of the game, moves after it are kept.</li>
+     * </ul>
+     * Engine gets the shortest {@code position} command of the new position instead, see
+     * {@link Board#positionCommand()}. Invalid move is answered with {@code info string} and is not passed to engine,
+     * and {@code go} after it is answered with {@code bestmove 0000}.
+     * <p>
+     * {@code position} command which {@link Board} can't parse, e.g. with Chess960 castling or engine specific syntax,
+     * is passed to engine as is. Game tracking is off until the next {@code position} command: game commands are
+     * rejected, and cache, book and speculation are not used.
+     * @return command to pass on, {@code null} if command was handled.
+     */
+    private String processPositionCommand(EngineSession session, String command) {
+        if (command.startsWith("position ")) {
+            session.invalidPosition = false;
+            try {
+                session.game = new Game(Board.fromPosition(command));
+                session.untracked = false;
+            } catch (IllegalArgumentException e) {
+                logger.log("info", "Position is not tracked: %s", e.getMessage());
+                session.game = null;
+                session.untracked = true;
+            }
+            return command;
+        }
+
+        String[] tokens = command.split("\\s+");
+        switch (tokens[0]) {
+            case "move":
+            case "takeback":
+            case "ply":
+                return processGameCommand(session, tokens);
+            case "go":
+                if (!session.invalidPosition) return command;
+                session.broadcaster.onEngineOutput("bestmove 0000");
+                return null;
+            default:
+                return command;
+        }
+    }
+
+    /**
+     * @return {@code position} command of the game after {@code move}, {@code takeback} or {@code ply} command,
+     * {@code null} if command was not valid.
+     */
+    private String processGameCommand(EngineSession session, String[] tokens) {
+        if (session.game == null) {
+            if (session.untracked) return rejectPosition(session, "Position is not tracked, send position command");
+            session.game = new Game(Board.startpos());
+        }
+
+        Game game = session.game;
+        boolean valid;
+        try {
+            switch (tokens[0]) {
+                case "move":
+                    valid = tokens.length == 2 && game.play(tokens[1]);
+                    break;
+                case "takeback":
+                    valid = tokens.length <= 2 && game.takeback(tokens.length == 2 ? Integer.parseInt(tokens[1]) : 1);
+                    break;
+                default:
+                    valid = tokens.length == 2 && game.goTo(Integer.parseInt(tokens[1]));
+            }
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid) return rejectPosition(session, "Invalid " + String.join(" ", tokens));
+
+        session.invalidPosition = false;
+        return game.getBoard().positionCommand();
+    }
+
+    private String rejectPosition(EngineSession session, String message) {
+        logger.log("error", "%s", message);
+        session.invalidPosition = true;
+        session.broadcaster.onEngineOutput("info string " + message);
+        return null;
+    }
+
+    /**
+     * Answers {@code go} in book position with book move, without engine. Searches without limit ({@code infinite}
+     * and {@code ponder}) always go to engine. Users can turn the book off with {@code setoption name OwnBook value
+     * false}, which is not passed to engine.
+     * @return whether command was handled and must not be passed to engine.
+     */
+    private boolean processBookCommand(EngineSession session, String command) {
+        if (command.toLowerCase().startsWith("setoption name ownbook value ")) {
+            session.ownBook = command.toLowerCase().endsWith(" true");
+            return true;
+        } else if (session.ownBook && (command.equals("go") || command.startsWith("go "))
+                && !command.contains(" infinite") && !command.contains(" ponder")) {
+            OpeningBook.BookMove bookMove = book.lookup(session.getBoard());
+            if (bookMove == null) {
+                ServerMetrics.BOOK_MISSES.increment();
+                return false;
             }
-            logger.log("info", "Sending engine status info");
-            return engineThread.isRunning();
+            ServerMetrics.BOOK_HITS.increment();
+            String move = Move.toUci(bookMove.getMove());
+            session.broadcaster.onEngineOutput("info string book move " + move + " weight " + bookMove.getWeight());
+            session.broadcaster.onEngineOutput("info depth 1 multipv 1 nodes 0 time 0 pv " + move);
+            session.broadcaster.onEngineOutput("bestmove " + move);
+            return true;
         }
         return false;
     }
 
     /**
-     * Pass {@code command} to engine.
-     * @param command command to pass.
+     * Answers {@code go} with speculative search of the same position and limits, which may be finished already.
+     * If that search has no engine or {@code stop} comes before it starts, then {@code go} is passed to the user
+     * engine as usual. Otherwise, when speculation is enabled with {@code setoption name Speculate value true}, positions likely to
+     * come next are searched after {@code bestmove}, see {@link Speculator}. Only searches with limits which make
+     * result depend on position alone are speculated. The option is not passed to engine.
+     * @return whether command was handled and must not be passed to engine.
      */
-    public void processRawCommand(String command) {
-        if (engineThread == null) {
-            System.err.println("Cant process command, engine is null");
-            return;
+    private boolean processSpeculativeCommand(EngineSession session, EngineThread engineThread, String command) {
+        if (command.toLowerCase().startsWith("setoption name speculate value ")) {
+            session.speculate = command.toLowerCase().endsWith(" true");
+            if (!session.speculate) cancelSpeculation(session);
+            return true;
+        }
+        if (command.equals("stop") && session.adopted != null) {
+            Speculator.Search adopted = session.adopted;
+            if (adopted.stop()) return true;
+            session.adopted = null;
+            send(session, engineThread, adopted.getGo());
+            return false;
+        }
+        if (!command.equals("go") && !command.startsWith("go ")) return false;
+
+        Map<String, Speculator.Search> predicted = new HashMap<>(session.speculations);
+        session.speculations.clear();
+        cancelSpeculation(session);
+        String limits = EvaluationCache.goKey(command);
+        Board board = session.getBoard();
+        if (!session.speculate || limits == null || board == null) return false;
+
+        String key = String.join("|", session.options.values().toString(), board.positionKey(), limits);
+        Speculator.Search search = predicted.remove(key);
+        predicted.values().forEach(Speculator.Search::cancel);
+        if (search != null && search.adopt(session.broadcaster::onEngineOutput, () -> {
+            synchronized (session) {
+                if (session.adopted != search || session.engineThread != engineThread) return;
+                session.adopted = null;
+                send(session, engineThread, command);
+            }
+        })) {
+            ServerMetrics.SPECULATION_HITS.increment();
+            session.adopted = search;
+            return true;
         }
+        ServerMetrics.SPECULATION_MISSES.increment();
+        if (search != null) search.cancel();
 
+        String position = board.positionCommand();
+        List<String> options = new ArrayList<>(session.options.values());
+        int predictionId = ++session.predictionId;
+        session.prediction = speculator.new Prediction(engineThread, moves -> CompletableFuture.runAsync(
+                () -> speculate(session, predictionId, position, command, options, moves), acquirer));
+        engineThread.addUciListener(session.prediction);
+        return false;
+    }
+
+    /**
+     * Starts speculative searches of positions after predicted {@code moves} in {@code position}.
+     */
+    private void speculate(EngineSession session, int predictionId, String position, String goCommand,
+                           List<String> options, List<int[]> moves) {
+        synchronized (session) {
+            if (!session.speculate || session.prediction == null || session.predictionId != predictionId) return;
+            session.prediction = null;
+
+            for (int[] line : moves) {
+                Board board = Board.fromPosition(position);
+                boolean legal = true;
+                for (int move : line) {
+                    legal = legal && board.play(move);
+                }
+                String key = String.join("|", options.toString(), board.positionKey(),
+                        EvaluationCache.goKey(goCommand));
+                if (!legal || session.speculations.containsKey(key)) continue;
+
+                Speculator.Search search = speculator.start(session.token, session.enginePath, options,
+                        board.positionCommand(), goCommand);
+                if (search == null) break;
+                session.speculations.put(key, search);
+            }
+        }
+    }
+
+    /**
+     * Cancels speculative searches and prediction of the session.
+     */
+    private void cancelSpeculation(EngineSession session) {
+        if (session.prediction != null) {
+            session.prediction.cancel();
+            session.prediction = null;
+        }
+        if (session.adopted != null) {
+            session.adopted.cancel();
+            session.adopted = null;
+        }
+        session.speculations.values().forEach(Speculator.Search::cancel);
+        session.speculations.clear();
+    }
+
+    /**
+     * Passes command of the user to engine. {@code go} is queued as interactive job and sent when the job gets a
+     * slot, previous job of the session is closed first, so its {@code go} is not sent later. {@code stop} of a search which still waits removes it from the queue and is answered with
+     * {@code bestmove 0000}, because the engine has nothing to stop.
+     */
+    private void send(EngineSession session, EngineThread engineThread, String command) {
+        String trimmed = command.trim();
+        if (trimmed.equals("go") || trimmed.startsWith("go ")) {
+            if (session.job != null) session.job.close();
+            session.job = jobs.submit(session.token, JobScheduler.Priority.INTERACTIVE, DEFAULT_WEIGHT, engineThread,
+                    () -> engineThread.processRawCommand(command));
+            return;
+        }
+        if (trimmed.equals("stop") && session.job != null && session.job.cancel()) {
+            session.broadcaster.onEngineOutput("bestmove 0000");
+            return;
+        }
         engineThread.processRawCommand(command);
     }
 
     /**
-     * Observable for handling {@link chess.engine.EngineThread.EngineOutputListener EngineOutputListener} notifications
+     * Queues search on engine which is not bound to any user session.
+     * @param owner token of the user who asked for the search.
+     * @param start sends {@code position} and {@code go} commands, run when search gets a slot.
      */
-    public class EngineObservable extends Observable implements EngineThread.EngineOutputListener {
+    JobScheduler.Job schedule(String owner, JobScheduler.Priority priority, EngineThread engineThread,
+                              Runnable start) {
+        return jobs.submit(owner, priority, DEFAULT_WEIGHT, engineThread, start);
+    }
+
+    /**
+     * Analyses every position from {@code fens} on up to {@code workers} engines, which are not bound to any user.
+     * Returns after all positions are analysed. Positions are analysed as batch jobs, which give way to interactive
+     * searches.
+     * @param owner token of the user.
+     * @param enginePath path of the engine.
+     * @param fens positions to analyse.
+     * @param goCommand {@code go} command with search limits.
+     * @param workers requested number of engines, limited by {@link Constants#getBATCH_WORKERS()}.
+     * @param results consumer of results in completion order. Batch is cancelled if it throws exception.
+     */
+    public void analyseBatch(String owner, String enginePath, List<String> fens, String goCommand, int workers,
+                             Consumer<AnalysisModel> results) {
+        int engines = workers > 0 ? Math.min(workers, batchWorkers) : batchWorkers;
+        new BatchAnalysis(this, owner, enginePath, fens, goCommand, engines, results, log).run(threads);
+    }
+
+    /**
+     * Analyses single position on engine which is not bound to any user. Engine is stopped with {@code stop} command
+     * when {@code deadline} passes, and the result contains the best move found so far. Deadline counts from the call,
+     * including the wait for an engine. Search runs as interactive job, if it does not get an engine and a slot before
+     * {@code deadline}, then the result contains only an error.
+     * @param owner token of the user.
+     * @param enginePath path of the engine.
+     * @param position {@code position} command.
+     * @param goCommand {@code go} command, e.g. {@code go depth 20} or {@code go infinite}.
+     * @param deadline maximal time of the search in ms, capped by configured maximum.
+     * @return future which completes with search result, never exceptionally.
+     */
+    public CompletableFuture<AnalysisModel> analyse(String owner, String enginePath, String position,
+                                                    String goCommand, long deadline) {
+        long timeout = Math.min(deadline, maxAnalyseDeadline);
+        long deadlineAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return CompletableFuture.supplyAsync(() -> acquireEngine(enginePath), acquirer)
+                .thenCompose(engineThread -> {
+                    if (engineThread == null) {
+                        return CompletableFuture.completedFuture(analysisError("Can't start engine"));
+                    }
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineAt - System.nanoTime());
+                    if (remaining <= 0) {
+                        releaseEngine(enginePath, engineThread);
+                        return CompletableFuture.completedFuture(analysisError("Engine was not ready before deadline"));
+                    }
+                    return analyse(owner, enginePath, engineThread, position, goCommand, remaining);
+                })
+                .completeOnTimeout(analysisError("Engine was not ready before deadline"), timeout + STOP_TIMEOUT,
+                        TimeUnit.MILLISECONDS);
+    }
+
+    private static AnalysisModel analysisError(String error) {
+        AnalysisModel result = new AnalysisModel();
+        result.setError(error);
+        return result;
+    }
+
+    private CompletableFuture<AnalysisModel> analyse(String owner, String enginePath, EngineThread engineThread,
+                                                     String position, String goCommand, long deadline) {
+        EngineSearch search = new EngineSearch(new AnalysisModel());
+        CompletableFuture<AnalysisModel> done = search.result();
+        JobScheduler.Job job = schedule(owner, JobScheduler.Priority.INTERACTIVE, engineThread,
+                () -> search.start(engineThread, position, goCommand));
+
+        CompletableFuture.delayedExecutor(deadline, TimeUnit.MILLISECONDS).execute(() -> {
+            if (job.cancel()) {
+                search.cancel("Search did not start before deadline");
+            } else if (!done.isDone()) {
+                engineThread.processRawCommand("stop");
+            }
+        });
+
+        return done.orTimeout(deadline + STOP_TIMEOUT, TimeUnit.MILLISECONDS).handle((result, e) -> {
+            if (e == null) {
+                releaseEngine(enginePath, engineThread);
+                return result;
+            }
+            logger.log("error", "Engine %s did not answer stop", enginePath);
+            job.close();
+            engineThread.setShouldStop(true);
+            result = search.partial();
+            result.setError("Engine did not answer stop");
+            return result;
+        });
+    }
+
+    /**
+     * Takes ready engine from the pool, or starts new one and waits until it is ready.
+     * @return running engine, or {@code null} if engine could not be started.
+     */
+    EngineThread acquireEngine(String enginePath) {
+        EnginePool pool = pools.get(enginePath);
+        EngineThread engineThread = pool == null ? null : pool.lease();
+        if (engineThread != null) return engineThread;
+
+        engineThread = new EngineThread(enginePath, ioMode, threads, recorder, scheduler, log);
+        engineThread.start();
+        try {
+            engineThread.makeReady("uci").get(READY_TIMEOUT, TimeUnit.MILLISECONDS);
+            return engineThread;
+        } catch (Exception e) {
+            logger.log("error", "Engine %s did not get ready", enginePath);
+            engineThread.setShouldStop(true);
+            return null;
+        }
+    }
+
+    /**
+     * Returns engine taken with {@link #acquireEngine(String)} to the pool, or stops it if there is no pool.
+     */
+    void releaseEngine(String enginePath, EngineThread engineThread) {
+        EnginePool pool = pools.get(enginePath);
+        if (pool != null) {
+            pool.release(engineThread);
+        } else {
+            engineThread.setShouldStop(true);
+        }
+    }
+
+    /**
+     * @return hit, miss and shared search counters of evaluation cache, {@code null} if cache is disabled.
+     */
+    public CacheStats getCacheStats() {
+        if (cache == null) return null;
+        return new CacheStats(cache.getHits(), cache.getMisses(), cache.getShared(), cache.getSize());
+    }
+
+    /**
+     * Answers {@code go} command from cache if possible.
+     * @return whether command was handled and should not be passed to engine.
+     */
+    private boolean processCachedCommand(EngineSession session, EngineThread engineThread, String command) {
+        if (command.equals("stop")) {
+            abortSearch(session, engineThread);
+        } else if (command.equals("go") || command.startsWith("go ")) {
+            session.searchId++;
+            abortSearch(session, engineThread);
+
+            String limits = EvaluationCache.goKey(command);
+            Board board = session.getBoard();
+            if (board != null && limits != null) {
+                String key = String.join("|", session.enginePath, session.options.values().toString(),
+                        board.positionKey(), limits);
+                return searchCached(session, engineThread, key, command);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether search result was sent from cache, or will be sent after identical search finishes.
+     */
+    private boolean searchCached(EngineSession session, EngineThread engineThread, String key, String command) {
+        List<String> lines = cache.get(key);
+        if (lines != null) {
+            lines.forEach(session.broadcaster::onEngineOutput);
+            return true;
+        }
+
+        CompletableFuture<List<String>> running = cache.startSearch(key, new CompletableFuture<>());
+        if (running != null) {
+            int searchId = session.searchId;
+            running.thenAcceptAsync(result -> {
+                synchronized (session) {
+                    EngineThread current = session.engineThread;
+                    if (session.searchId != searchId) return;
+
+                    if (result != null) {
+                        result.forEach(session.broadcaster::onEngineOutput);
+                    } else if (current != null) {
+                        send(session, current, command);
+                    }
+                }
+            });
+            return true;
+        }
+
+        session.capture = cache.new SearchCapture(key, engineThread);
+        engineThread.addUciListener(session.capture);
+        return false;
+    }
+
+    private void abortSearch(EngineSession session, EngineThread engineThread) {
+        if (session.capture == null) return;
+
+        session.capture.abort();
+        engineThread.removeUciListener(session.capture);
+        session.capture = null;
+    }
+
+    /**
+     * Returns broadcaster of the user engine output. Broadcaster stays the same when engine is restarted.
+     * @param token user token.
+     */
+    public EngineBroadcaster getBroadcaster(String token) {
+        return getSession(token).broadcaster;
+    }
+
+    /**
+     * Returns broadcaster of the analysis which spectators can watch.
+     * @param analysisId id of the analysis, see {@link EngineBroadcaster#getId()}.
+     * @return broadcaster, {@code null} if there is no such analysis.
+     */
+    public EngineBroadcaster findBroadcaster(String analysisId) {
+        return broadcasters.get(analysisId);
+    }
+
+    /**
+     * Stops engine of the user which session was closed.
+     * @param token user token.
+     */
+    @Override
+    public void onSessionClosed(String token) {
+        EngineSession session = sessions.remove(token);
+        if (session == null) return;
+
+        synchronized (session) {
+            stopEngine(session);
+        }
+        broadcasters.remove(session.broadcaster.getId());
+        session.broadcaster.close();
+        logger.log("info", "Engine session closed, %d active sessions", sessions.size());
+    }
+
+    /**
+     * Stops all engines, including idle engines in pools. Called on application shutdown.
+     */
+    public void shutdown() {
+        acquirer.shutdown();
+        pools.values().forEach(EnginePool::shutdown);
+        sessions.keySet().forEach(this::onSessionClosed);
+    }
+
+    private EngineSession getSession(String token) {
+        return sessions.computeIfAbsent(token, t -> {
+            EngineSession session = new EngineSession(t);
+            broadcasters.put(session.broadcaster.getId(), session.broadcaster);
+            return session;
+        });
+    }
+
+    /**
+     * Engine of a single user.
+     */
+    private static class EngineSession {
+
+        private final String token;
+
+        private volatile EngineThread engineThread;
+
+        /**
+         * the last search of the user.
+         */
+        private JobScheduler.Job job;
+
+        /**
+         * game set up by the last {@code position} command and continued with game commands, {@code null} before the
+         * first one or if it is not tracked.
+         */
+        private Game game;
+
+        /**
+         * whether the last {@code position} command could not be parsed and was passed to engine without game.
+         */
+        private boolean untracked;
+
+        /**
+         * whether the last game command was rejected.
+         */
+        private boolean invalidPosition;
+
+        /**
+         * whether {@code go} may be answered from opening book.
+         */
+        private boolean ownBook = true;
+
+        /**
+         * pool from which {@link #engineThread} was leased, {@code null} if engine was started for this session.
+         */
+        private EnginePool pool;
+
+        private String enginePath;
+
+        /**
+         * whether positions likely to come next are searched while the user thinks.
+         */
+        private boolean speculate;
+
+        /**
+         * predicts positions from the running search of the user.
+         */
+        private Speculator.Prediction prediction;
+
+        /**
+         * incremented on every prediction, so late predictions are ignored.
+         */
+        private int predictionId;
 
         /**
-         * Called every time there is some output form engine.
-         * This method will notify all observers.
-         * @param output engine output line.
+         * speculative searches by options, position key and limits.
          */
-        @Override
-        public void onEngineOutput(String output) {
-            setChanged();
-            notifyObservers(output);
+        private final Map<String, Speculator.Search> speculations = new HashMap<>();
+
+        /**
+         * speculative search which answers the last {@code go}.
+         */
+        private Speculator.Search adopted;
+
+        /**
+         * {@code setoption} commands by option name.
+         */
+        private final SortedMap<String, String> options = new TreeMap<>();
+
+        /**
+         * incremented on every {@code go} command.
+         */
+        private int searchId;
+
+        /**
+         * collects output of the running search for cache.
+         */
+        private EvaluationCache.SearchCapture capture;
+
+        private final EngineBroadcaster broadcaster = new EngineBroadcaster();
+
+        EngineSession(String token) {
+            this.token = token;
+        }
+
+        Board getBoard() {
+            return game == null ? null : game.getBoard();
+        }
+
+        boolean isEngineRunning() {
+            EngineThread engineThread = this.engineThread;
+            return engineThread != null && engineThread.isRunning();
         }
     }
-}
 
+    /**
+     * Evaluation cache counters.
+     */
+    public static class CacheStats {
+
+        private final long hits;
+        private final long misses;
+        private final long shared;
+        private final int size;
+
+        CacheStats(long hits, long misses, long shared, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.shared = shared;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getShared() {
+            return shared;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package chess.engine;
+
+import chess.server.ServerMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long it takes from passing a command to {@link EngineThread} until the next engine output line is
+ * handed to the listeners. Engine answers to commands like {@code isready} immediately, so this value shows the lag
+ * added by the engine read/write loop itself. Times from {@code go} command to the first {@code info} line and to
+ * {@code bestmove} line are recorded in {@link ServerMetrics}.
+ */
+class EngineLatency {
+
+    /**
+     * time of the last {@code go} command without {@code bestmove} yet, {@code 0} if there is no such command.
+     */
+    private volatile long searchSince;
+
+    /**
+     * whether the first {@code info} line of the current search was already received.
+     */
+    private volatile boolean searchInfoReceived;
+
+    /**
+     * time of the oldest command which has not been answered yet, {@code 0} if there is no such command.
+     */
+    private final AtomicLong pendingSince = new AtomicLong();
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Should be called every time command is queued for the engine.
+     */
+    void commandQueued(String command) {
+        long now = System.nanoTime();
+        pendingSince.compareAndSet(0, now);
+        if (command.startsWith("go") && searchSince == 0) {
+            searchInfoReceived = false;
+            searchSince = now;
+        }
+    }
+
+    /**
+     * Should be called every time engine output line was passed to listeners.
+     */
+    void lineDispatched(String line) {
+        long searchSince = this.searchSince;
+        if (searchSince != 0) {
+            if (!searchInfoReceived && line.startsWith("info")) {
+                searchInfoReceived = true;
+                ServerMetrics.COMMAND_TO_FIRST_INFO.record(System.nanoTime() - searchSince);
+            } else if (line.startsWith("bestmove")) {
+                this.searchSince = 0;
+                ServerMetrics.COMMAND_TO_BESTMOVE.record(System.nanoTime() - searchSince);
+            }
+        }
+
+        long since = pendingSince.getAndSet(0);
+        if (since == 0) return;
+
+        long lag = System.nanoTime() - since;
+        count.incrementAndGet();
+        totalNanos.addAndGet(lag);
+        maxNanos.accumulateAndGet(lag, Math::max);
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("samples=%d mean=%.3fms max=%.3fms",
+                getCount(), getMeanNanos() / 1e6, getMaxNanos() / 1e6);
+    }
+}
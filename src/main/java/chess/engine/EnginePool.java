@@ -0,0 +1,163 @@
+package chess.engine;
+
+import chess.server.ExecutionThreads;
+import chess.server.ServerLogger;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps idle engine processes of a single engine binary, which already answered {@code uci}/{@code isready}, so
+ * starting an engine for user only takes an engine from the queue. Engines returned to the pool finish their search,
+ * get default values of options changed while leased and are reset with {@code ucinewgame} before they are leased
+ * again, so no output of the previous user reaches the next one.
+ */
+class EnginePool {
+
+    /**
+     * maximal time in ms for engine to answer {@code isready} or {@code stop}.
+     */
+    private static final long READY_TIMEOUT = 10_000;
+
+    private final String enginePath;
+
+    private final int size;
+
+    private final EngineThread.IoMode ioMode;
+
+    private final ExecutionThreads threads;
+
+    private final TranscriptRecorder recorder;
+
+    private final ResourceScheduler scheduler;
+
+    /**
+     * engines ready to be leased.
+     */
+    private final BlockingQueue<EngineThread> idle = new LinkedBlockingQueue<>();
+
+    /**
+     * number of engines which are idle or are getting ready.
+     */
+    private final AtomicInteger available = new AtomicInteger();
+
+    private volatile boolean shutdown = false;
+
+    private final boolean log;
+
+    private final ServerLogger logger;
+
+    EnginePool(String enginePath, int size, EngineThread.IoMode ioMode, ExecutionThreads threads,
+               TranscriptRecorder recorder, ResourceScheduler scheduler, boolean log) {
+        this.log = log;
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.enginePath = enginePath;
+        this.size = size;
+        this.ioMode = ioMode;
+        this.threads = threads;
+        this.recorder = recorder;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts engines until pool contains {@link #size} idle or warming up engines.
+     */
+    void fill() {
+        while (!shutdown) {
+            if (available.incrementAndGet() > size) {
+                available.decrementAndGet();
+                return;
+            }
+            EngineThread engineThread = new EngineThread(enginePath, ioMode, threads, recorder, scheduler, log);
+            engineThread.start();
+            makeReady(engineThread, "uci");
+        }
+    }
+
+    /**
+     * Takes idle engine from the pool and starts warming up a replacement.
+     *
+     * @return running engine ready for commands, or {@code null} if there is no idle engine.
+     */
+    EngineThread lease() {
+        EngineThread engineThread;
+        while ((engineThread = idle.poll()) != null) {
+            available.decrementAndGet();
+            if (engineThread.isRunning()) {
+                engineThread.setIdle(false);
+                break;
+            }
+        }
+        fill();
+        return engineThread;
+    }
+
+    /**
+     * Returns leased engine to the pool. Running search is stopped and after its {@code bestmove} options set by the
+     * user are set back to their defaults and engine is reset with {@code ucinewgame}. If the pool is already full,
+     * then engine is stopped.
+     *
+     * @param engineThread engine leased with {@link #lease()}.
+     */
+    void release(EngineThread engineThread) {
+        if (!engineThread.isRunning()) return;
+
+        if (shutdown || available.incrementAndGet() > size) {
+            available.decrementAndGet();
+            stop(engineThread);
+            return;
+        }
+
+        engineThread.processRawCommand("stop");
+        engineThread.searchFinished().orTimeout(READY_TIMEOUT, TimeUnit.MILLISECONDS).whenComplete((v, e) -> {
+            if (e != null) {
+                available.decrementAndGet();
+                logger.log("error", "Engine %s did not stop search", enginePath);
+                stop(engineThread);
+            } else {
+                engineThread.resetOptions();
+                makeReady(engineThread, "ucinewgame");
+            }
+        });
+    }
+
+    /**
+     * Stops all idle engines. Engines leased after this call will be stopped on release.
+     */
+    void shutdown() {
+        shutdown = true;
+        EngineThread engineThread;
+        while ((engineThread = idle.poll()) != null) {
+            stop(engineThread);
+        }
+    }
+
+    String getEnginePath() {
+        return enginePath;
+    }
+
+    /**
+     * Sends {@code command} followed by {@code isready} to engine, and puts it into {@link #idle} queue after it
+     * answers {@code readyok}.
+     */
+    private void makeReady(EngineThread engineThread, String command) {
+        engineThread.makeReady(command).orTimeout(READY_TIMEOUT, TimeUnit.MILLISECONDS).whenComplete((v, e) -> {
+            if (e != null || shutdown) {
+                available.decrementAndGet();
+                if (e != null) {
+                    logger.log("error", "Engine %s did not get ready", enginePath);
+                }
+                stop(engineThread);
+            } else {
+                engineThread.setIdle(true);
+                idle.add(engineThread);
+            }
+        });
+    }
+
+    private static void stop(EngineThread engineThread) {
+        engineThread.setShouldStop(true);
+    }
+}
@@ -0,0 +1,124 @@
+package chess.engine;
+
+import chess.board.Move;
+import chess.model.AnalysisModel;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs a single search on engine and collects its result, i.e. the last {@code info} line with principal variation
+ * (with its depth, score and principal variation) and the move from {@code bestmove} line.
+ */
+class EngineSearch implements UciListener {
+
+    private final AnalysisModel result;
+
+    private final CompletableFuture<AnalysisModel> done = new CompletableFuture<>();
+
+    private String lastInfo;
+
+    private int depth = -1;
+
+    private UciInfo.ScoreType scoreType = UciInfo.ScoreType.NONE;
+
+    private int score;
+
+    private String pv;
+
+    /**
+     * engine running the search, set by {@link #start} before this search listens to its output.
+     */
+    private volatile EngineThread engineThread;
+
+    /**
+     * number of {@code go} commands passed to engine before this search.
+     */
+    private volatile long goCount;
+
+    EngineSearch(AnalysisModel result) {
+        this.result = result;
+    }
+
+    /**
+     * Passes {@code position} and {@code go} commands to engine.
+     *
+     * @return future which completes with search result after engine outputs {@code bestmove}.
+     */
+    CompletableFuture<AnalysisModel> start(EngineThread engineThread, String position, String go) {
+        this.goCount = engineThread.getGoCount();
+        this.engineThread = engineThread;
+        engineThread.addUciListener(this);
+        done.whenComplete((r, e) -> engineThread.removeUciListener(this));
+
+        engineThread.processRawCommand(position);
+        engineThread.processRawCommand(go);
+        return done;
+    }
+
+    /**
+     * @return future which completes with search result, the same as returned by {@link #start}.
+     */
+    CompletableFuture<AnalysisModel> result() {
+        return done;
+    }
+
+    /**
+     * Completes search which never started with {@code error}.
+     */
+    synchronized void cancel(String error) {
+        fillResult();
+        result.setError(error);
+        done.complete(result);
+    }
+
+    /**
+     * @return result containing the last received {@code info} line, without best move.
+     */
+    synchronized AnalysisModel partial() {
+        fillResult();
+        return result;
+    }
+
+    /**
+     * @param answered number of {@code bestmove} lines including the one being dispatched, if any.
+     * @return whether engine output belongs to the {@code go} of this search and not to a search which was running
+     * on engine before.
+     */
+    private boolean isOwn(long answered) {
+        long sent = engineThread.getGoCount();
+        return sent > goCount && answered == sent;
+    }
+
+    @Override
+    public synchronized void onInfo(UciInfo info) {
+        if (info.hasPv() && info.getMultipv() == 1 && isOwn(engineThread.getBestMoveCount() + 1)) {
+            lastInfo = info.getLine();
+            depth = info.getDepth();
+            scoreType = info.getScoreType();
+            score = info.getScore();
+
+            StringBuilder moves = new StringBuilder();
+            for (int i = 0; i < info.getPvLength(); i++) {
+                if (i > 0) moves.append(' ');
+                moves.append(Move.toUci(info.getPvMove(i)));
+            }
+            pv = moves.toString();
+        }
+    }
+
+    @Override
+    public synchronized void onBestMove(UciBestMove bestMove) {
+        if (!isOwn(engineThread.getBestMoveCount())) return;
+        fillResult();
+        result.setBestmove(bestMove.getMove() == Move.NONE ? null : Move.toUci(bestMove.getMove()));
+        done.complete(result);
+    }
+
+    private void fillResult() {
+        result.setInfo(lastInfo);
+        result.setDepth(depth < 0 ? null : depth);
+        result.setScore(scoreType == UciInfo.ScoreType.CP ? score : null);
+        result.setMate(scoreType == UciInfo.ScoreType.MATE ? score : null);
+        result.setPv(pv);
+    }
+}
@@ -1,25 +1,55 @@
 package chess.engine;
 
+import chess.server.ExecutionThreads;
 import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
 
 import java.io.*;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * This class handles running engine process. It also allows for receiving and sending messages from and to
- * chess engine.
+ * chess engine. Engine i/o runs on threads created by {@link ExecutionThreads}, platform or virtual.
  */
-class EngineThread extends Thread {
+class EngineThread implements Runnable, ServerMetrics.EngineProbe {
     private static final long DEFAULT_UPDATE_DELAY = 20;
 
+    private static final AtomicInteger engineNumber = new AtomicInteger();
+
+    /**
+     * Available ways of exchanging data with engine process.
+     */
+    enum IoMode {
+        /**
+         * Dedicated reader thread blocks on engine output and passes every line to listeners as soon as it arrives.
+         * Engine thread blocks on {@link #output} and writes all queued commands with a single flush.
+         */
+        EVENT_DRIVEN,
+
+        /**
+         * Single loop which reads at most one line and writes at most one command every {@link #updateDelay} ms.
+         */
+        POLLING
+    }
+
     private String enginePath = "engines/stockfish";
 
     /**
      * Engine process.
      */
-    private Process process;
+    private volatile Process process;
 
     /**
      * reads values from engine output.
@@ -34,34 +64,124 @@ class EngineThread extends Thread {
     /**
      * for storing values which will be passed to engine
      */
-    private ConcurrentLinkedQueue<String> output;
+    private final BlockingQueue<String> output;
 
     /**
      * listeners which will be notified when engine outputs new line.
      */
-    private List<EngineOutputListener> listeners = new ArrayList<>();
+    private final List<EngineOutputListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ServerLogger logger = new ServerLogger(this.getClass().getName(), true);
 
-    private final ServerLogger logger = new ServerLogger(this.getClass().getName(), true);
+    private final EngineLatency latency = new EngineLatency();
+
+    /**
+     * number of {@code go} commands passed to engine and number of {@code bestmove} lines answered, engine answers
+     * every {@code go} with a single {@code bestmove} in order, so the n-th {@code bestmove} belongs to the n-th
+     * {@code go}.
+     */
+    private final AtomicLong goCount = new AtomicLong();
+
+    private final AtomicLong bestMoveCount = new AtomicLong();
+
+    /**
+     * parses every output line once for all {@link UciListener typed listeners}, including the one noting
+     * {@link #nps}.
+     */
+    private final UciParser parser = new UciParser();
+
+    {
+        parser.addListener(new UciListener() {
+            @Override
+            public void onInfo(UciInfo info) {
+                if (info.getNps() >= 0) nps = info.getNps();
+            }
+        });
+    }
+
+    private IoMode ioMode = IoMode.EVENT_DRIVEN;
+
+    private ExecutionThreads threads = ExecutionThreads.PLATFORM;
+
+    /**
+     * runs this engine, created on {@link #start()}.
+     */
+    private Thread thread;
+
+    private final int number = engineNumber.incrementAndGet();
+
+    private final String name = "engine-" + number;
+
+    /**
+     * records engine i/o, {@code null} if transcripts are not recorded.
+     */
+    private TranscriptRecorder recorder;
+
+    /**
+     * shares host CPUs between engines, {@code null} if engine options are not limited.
+     */
+    private ResourceScheduler scheduler;
+
+    /**
+     * resources of running engine process, {@code null} if engine is not running or there is no scheduler.
+     */
+    private volatile ResourceScheduler.Slot slot;
+
+    /**
+     * whether engine waits in a pool.
+     */
+    private volatile boolean idle;
 
     /**
      * whether this thread should stop
      */
-    private boolean shouldStop = false;
+    private volatile boolean shouldStop = false;
 
     /**
      * is this thread running
      */
-    private boolean running = false;
+    private volatile boolean running = false;
 
-    private String info = null;
+    private volatile String info = null;
 
     /**
-     * time in ms between two engine read/write operations
+     * time when engine process was started, {@code 0} after engine answered {@code uciok}.
+     */
+    private volatile long startedAt;
+
+    /**
+     * nodes per second from the last {@code info} line.
+     */
+    private volatile long nps;
+
+    /**
+     * whether {@link #run()} finished, after that no {@code readyok} or {@code bestmove} will come.
+     */
+    private volatile boolean finished = false;
+
+    /**
+     * default values of options from {@code option} lines of {@code uci} output, by lower case option name.
+     */
+    private final Map<String, String> optionDefaults = new ConcurrentHashMap<>();
+
+    /**
+     * names of options changed with {@code setoption} since the last {@link #resetOptions()}, by lower case name.
+     */
+    private final Map<String, String> changedOptions = new ConcurrentHashMap<>();
+
+    /**
+     * futures returned by {@link #makeReady(String)} and {@link #searchFinished()} which wait for engine output.
+     */
+    private final Set<CompletableFuture<Void>> pendingReady = ConcurrentHashMap.newKeySet();
+
+    /**
+     * time in ms between two engine read/write operations in {@link IoMode#POLLING} mode, and maximal time between
+     * two {@link #shouldStop} checks in {@link IoMode#EVENT_DRIVEN} mode.
      */
     private long updateDelay = DEFAULT_UPDATE_DELAY;
 
     public EngineThread() {
-        this.output = new ConcurrentLinkedQueue<>();
+        this.output = new LinkedBlockingQueue<>();
     }
 
     public EngineThread(String enginePath) {
@@ -69,17 +189,80 @@ class EngineThread extends Thread {
         this.enginePath = "engines/" + enginePath;
     }
 
+    public EngineThread(String enginePath, IoMode ioMode) {
+        this(enginePath);
+        this.ioMode = ioMode;
+    }
+
+    public EngineThread(String enginePath, IoMode ioMode, ExecutionThreads threads) {
+        this(enginePath, ioMode);
+        this.threads = threads;
+    }
+
+    /**
+     * @param log {@code config.LOG}, whether engine traffic and errors are logged.
+     */
+    public EngineThread(String enginePath, IoMode ioMode, ExecutionThreads threads, TranscriptRecorder recorder,
+                        ResourceScheduler scheduler, boolean log) {
+        this(enginePath, ioMode, threads);
+        this.recorder = recorder;
+        this.scheduler = scheduler;
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+    }
+
+    /**
+     * Starts engine on a new thread.
+     */
+    public synchronized void start() {
+        if (thread != null) throw new IllegalStateException("Engine already started");
+        thread = threads.newThread(name, this);
+        thread.start();
+    }
+
+    /**
+     * Waits until engine thread finishes.
+     */
+    public void join() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+        }
+        if (thread != null) thread.join();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getPid() {
+        Process process = this.process;
+        return process == null ? -1 : process.pid();
+    }
+
+    @Override
+    public long getNps() {
+        return nps;
+    }
+
     /**
-     * This method will be called after {@link Thread#start()} call. This method starts new chess engine process
+     * This method will be called after {@link #start()} call. This method starts new chess engine process
      * using path from {@link #enginePath} field. Then it reads/writes from/to engine standard i/o using {@link #reader}
-     * /{@link #writer} in loop. After each loop cycle thread sleeps for {@link #updateDelay} ms.
-     * <p>
-     * Write to engine input is only performed when {@link #output} contains any message.
+     * /{@link #writer} according to {@link #ioMode} until {@link #shouldStop} is set.
      */
     @Override
     public void run() {
         try {
+            startedAt = System.nanoTime();
             process = new ProcessBuilder(enginePath).start();
+            ServerMetrics.register(this);
+            if (recorder != null) recorder.start(number, enginePath);
+            if (scheduler != null) {
+                ResourceScheduler.Slot slot = scheduler.register(this);
+                scheduler.setIdle(slot, idle);
+                this.slot = slot;
+            }
 
             running = true;
             info = "started";
@@ -93,45 +276,209 @@ class EngineThread extends Thread {
             OutputStreamWriter outw = new OutputStreamWriter(out);
             writer = new BufferedWriter(outw);
 
-            while (!shouldStop) {
-                try {
-                    Thread.sleep(updateDelay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
-                String line;
-                if (reader.ready()) {
-                    if ((line = reader.readLine()) != null) {
-                        logger.log("in", line);
-                        if (listeners != null) {
-                            for (EngineOutputListener l :
-                                    listeners) {
-                                l.onEngineOutput(line);
-                            }
-                        }
-                    }
-                }
-
-                if (output.size() > 0 && (line = output.remove()) != null) {
-                    logger.log("out", line);
-                    writer.append(line);
-                    writer.flush();
-                }
+            if (ioMode == IoMode.POLLING) {
+                runPolling();
+            } else {
+                runEventDriven();
             }
+
             writer.close();
-            reader.close();
             process.destroy();
+            reader.close();
         } catch (IOException e) {
+            if (process != null) process.destroy();
             running = false;
             info = "not found";
             logger.log("status", "Engine " + info);
+            ServerMetrics.unregister(this);
+            if (recorder != null) recorder.stop(number, info);
+            releaseSlot();
+            failPendingReady();
             return;
         }
 
         running = false;
         info = "stopped";
         logger.log("status", "Engine " + info);
+        logger.log("status", "Command to output latency: " + latency);
+        ServerMetrics.unregister(this);
+        if (recorder != null) recorder.stop(number, info);
+        releaseSlot();
+        failPendingReady();
+    }
+
+    private void releaseSlot() {
+        ResourceScheduler.Slot slot = this.slot;
+        if (slot != null) {
+            this.slot = null;
+            scheduler.unregister(slot);
+        }
+    }
+
+    private void failPendingReady() {
+        finished = true;
+        for (CompletableFuture<Void> ready : pendingReady) {
+            ready.completeExceptionally(new IllegalStateException("Engine " + info));
+        }
+    }
+
+    /**
+     * Starts reader thread which passes every engine output line to listeners, then writes queued commands to engine
+     * input. Every available command is written before the single flush.
+     */
+    private void runEventDriven() throws IOException {
+        Thread readerThread = threads.newThread(name + "-reader", this::readLoop);
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        while (!shouldStop) {
+            String line;
+            try {
+                line = output.poll(updateDelay, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (line == null) continue;
+
+            do {
+                logger.log("out", line);
+                if (recorder != null) recorder.command(number, line);
+                writer.append(line);
+            } while ((line = output.poll()) != null);
+            writer.flush();
+        }
+
+        process.destroy();
+        try {
+            readerThread.join(updateDelay);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Blocks on engine output until the process closes its output stream.
+     */
+    private void readLoop() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                dispatch(line);
+            }
+        } catch (IOException e) {
+            if (!shouldStop) {
+                logger.log("error", "Engine output closed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads at most one line and writes at most one command, then sleeps for {@link #updateDelay} ms.
+     */
+    private void runPolling() throws IOException {
+        while (!shouldStop) {
+            try {
+                Thread.sleep(updateDelay);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            String line;
+            if (reader.ready()) {
+                if ((line = reader.readLine()) != null) {
+                    dispatch(line);
+                }
+            }
+
+            if ((line = output.poll()) != null) {
+                logger.log("out", line);
+                if (recorder != null) recorder.command(number, line);
+                writer.append(line);
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * Passes line of engine output to listeners.
+     */
+    void dispatch(String line) {
+        logger.log("in", line);
+        if (recorder != null) recorder.output(number, line);
+        ResourceScheduler.Slot slot = this.slot;
+        if (slot != null) slot.onEngineOutput(line);
+        ServerMetrics.ENGINE_LINES.increment();
+        if (line.startsWith("bestmove")) {
+            bestMoveCount.incrementAndGet();
+        } else if (line.startsWith("option name ")) {
+            parseOption(line);
+        } else if (startedAt != 0 && line.startsWith("uciok")) {
+            ServerMetrics.ENGINE_START.record(System.nanoTime() - startedAt);
+            startedAt = 0;
+        }
+        for (EngineOutputListener l : listeners) {
+            try {
+                l.onEngineOutput(line);
+            } catch (RuntimeException e) {
+                listenerFailed(line, e);
+            }
+        }
+        try {
+            parser.parse(line);
+        } catch (RuntimeException e) {
+            listenerFailed(line, e);
+        }
+        latency.lineDispatched(line);
+    }
+
+    /**
+     * Notes default value of option from {@code option name <name> type <type> default <value> ...} line. Options
+     * without default, i.e. buttons, can't be reset and are not noted.
+     */
+    private void parseOption(String line) {
+        int type = line.indexOf(" type ");
+        int value = line.indexOf(" default ");
+        if (type < 0 || value < 0) return;
+
+        String name = line.substring("option name ".length(), type).trim();
+        value += " default ".length();
+        int end = line.length();
+        for (String keyword : new String[]{" min ", " max ", " var "}) {
+            int i = line.indexOf(keyword, value);
+            if (i >= 0 && i < end) end = i;
+        }
+        String defaultValue = line.substring(value, end).trim();
+        optionDefaults.put(name.toLowerCase(Locale.ROOT), defaultValue.equals("<empty>") ? "" : defaultValue);
+    }
+
+    /**
+     * Notes option changed by {@code setoption name <name> [value <value>]} command.
+     */
+    private void noteOption(String command) {
+        String option = command.trim();
+        if (!option.startsWith("setoption name ")) return;
+        int value = option.indexOf(" value ");
+        String name = option.substring("setoption name ".length(), value < 0 ? option.length() : value).trim();
+        changedOptions.put(name.toLowerCase(Locale.ROOT), name);
+    }
+
+    /**
+     * Sets every option changed with {@code setoption} since the last reset back to its default value, so the next
+     * user of the engine gets it as started. Must not be called during search.
+     */
+    void resetOptions() {
+        for (Map.Entry<String, String> option : changedOptions.entrySet()) {
+            String defaultValue = optionDefaults.get(option.getKey());
+            if (defaultValue == null) continue;
+            processRawCommand("setoption name " + option.getValue() + " value " + defaultValue);
+        }
+        changedOptions.clear();
+    }
+
+    /**
+     * Logs exception thrown by a listener, so it does not stop reading engine output.
+     */
+    private void listenerFailed(String line, RuntimeException e) {
+        logger.log("error", e, "Listener failed on engine output \"%s\"", line);
     }
 
     /**
@@ -140,9 +487,92 @@ class EngineThread extends Thread {
      * @param command command to pass to engine.
      */
     public void processRawCommand(String command) {
+        if (command.startsWith("setoption ")) noteOption(command);
+        ResourceScheduler.Slot slot = this.slot;
+        if (slot != null) {
+            String before = slot.before(command);
+            if (before != null) output.add(String.format("%s\n", before));
+            command = slot.filter(command);
+        }
+        latency.commandQueued(command);
+        if (command.equals("go") || command.startsWith("go ")) goCount.incrementAndGet();
         output.add(String.format("%s\n", command));
     }
 
+    /**
+     * @return number of {@code go} commands passed to engine.
+     */
+    long getGoCount() {
+        return goCount.get();
+    }
+
+    /**
+     * @return number of {@code bestmove} lines received from engine. Read by {@link UciListener} it is the number of
+     * the {@code bestmove} being dispatched, see {@link #getGoCount()}.
+     */
+    long getBestMoveCount() {
+        return bestMoveCount.get();
+    }
+
+    /**
+     * Marks engine idle in a pool or leased, idle engines don't take CPU budget from busy engines.
+     */
+    void setIdle(boolean idle) {
+        this.idle = idle;
+        ResourceScheduler.Slot slot = this.slot;
+        if (slot != null) scheduler.setIdle(slot, idle);
+    }
+
+    /**
+     * Passes {@code command} followed by {@code isready} to engine.
+     *
+     * @param command command to pass to engine.
+     * @return future which completes when engine answers {@code readyok}, or completes exceptionally if engine
+     * process could not be started or stopped before answering.
+     */
+    public CompletableFuture<Void> makeReady(String command) {
+        CompletableFuture<Void> ready = awaitOutput(line -> line.startsWith("readyok"));
+        processRawCommand(command);
+        processRawCommand("isready");
+        return ready;
+    }
+
+    /**
+     * Waits until engine answers every {@code go} passed to it so far with {@code bestmove}. Engines answer
+     * {@code isready} at once even while searching, so {@code readyok} after {@code stop} doesn't mean the search
+     * ended.
+     *
+     * @return future which completes after {@code bestmove} of the last {@code go}, or completes exceptionally if
+     * engine stops first.
+     */
+    public CompletableFuture<Void> searchFinished() {
+        long searches = goCount.get();
+        CompletableFuture<Void> done = awaitOutput(line -> bestMoveCount.get() >= searches);
+        if (bestMoveCount.get() >= searches) done.complete(null);
+        return done;
+    }
+
+    /**
+     * @return future which completes when engine outputs line matching {@code condition}, or completes exceptionally
+     * if engine stops first.
+     */
+    private CompletableFuture<Void> awaitOutput(Predicate<String> condition) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        EngineOutputListener listener = line -> {
+            if (condition.test(line)) done.complete(null);
+        };
+        addListeners(listener);
+        pendingReady.add(done);
+        done.whenComplete((v, e) -> {
+            removeListener(listener);
+            pendingReady.remove(done);
+        });
+        if (finished) {
+            done.completeExceptionally(new IllegalStateException("Engine " + info));
+        }
+        return done;
+    }
+
     /**
      * Sets {@link #shouldStop} value. If {@code shouldStop} is true, then engine process would be stopped as soon as
      * possible.
@@ -164,6 +594,10 @@ class EngineThread extends Thread {
         return info;
     }
 
+    EngineLatency getLatency() {
+        return latency;
+    }
+
     /**
      * Adds listener which will be notified after every engine output.
      *
@@ -173,6 +607,33 @@ class EngineThread extends Thread {
         this.listeners.add(listener);
     }
 
+    /**
+     * Removes listener added with {@link #addListeners(EngineOutputListener)}.
+     *
+     * @param listener
+     */
+    public void removeListener(EngineOutputListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Adds listener which will be notified after every engine output, with output already parsed.
+     *
+     * @param listener
+     */
+    public void addUciListener(UciListener listener) {
+        parser.addListener(listener);
+    }
+
+    /**
+     * Removes listener added with {@link #addUciListener(UciListener)}.
+     *
+     * @param listener
+     */
+    public void removeUciListener(UciListener listener) {
+        parser.removeListener(listener);
+    }
+
     public interface EngineOutputListener {
 
         /**
@@ -182,14 +643,4 @@ class EngineThread extends Thread {
          */
         void onEngineOutput(String output);
     }
-
-    @Override
-    protected void finalize() throws Throwable {
-        reader.close();
-        writer.close();
-        if (process.isAlive()) {
-            process.destroy();
-        }
-        super.finalize();
-    }
-}
\ No newline at end of file
+}
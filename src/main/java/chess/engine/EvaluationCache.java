@@ -0,0 +1,205 @@
+package chess.engine;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of finished engine searches. Key consists of engine path, engine options, normalized position
+ * and search limits, value contains the last {@code info} line of every {@code multipv} slot followed by
+ * {@code bestmove} line. Concurrent identical searches share a single engine search.
+ */
+class EvaluationCache {
+
+    /**
+     * {@code go} parameters which make search result depend only on position and engine options. {@code movetime} is
+     * not one of them, how far a timed search gets depends on machine load and CPU budget of the engine.
+     */
+    private static final Set<String> CACHEABLE_LIMITS = Set.of("depth", "nodes", "mate");
+
+    private final Map<String, List<String>> entries;
+
+    /**
+     * searches which are running at the moment, by key.
+     */
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder shared = new LongAdder();
+
+    EvaluationCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return lines of finished search, or {@code null} if there is no such search in cache.
+     */
+    List<String> get(String key) {
+        List<String> lines;
+        synchronized (entries) {
+            lines = entries.get(key);
+        }
+        if (lines != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return lines;
+    }
+
+    /**
+     * Registers {@code search} as running search for {@code key}, unless there already is one.
+     *
+     * @return already running search, which completes with {@code null} if it was aborted, or {@code null} if
+     * {@code search} was registered and caller has to run it.
+     */
+    CompletableFuture<List<String>> startSearch(String key, CompletableFuture<List<String>> search) {
+        CompletableFuture<List<String>> running = inFlight.putIfAbsent(key, search);
+        if (running != null) {
+            shared.increment();
+        }
+        return running;
+    }
+
+    /**
+     * Stores result of search registered with {@link #startSearch(String, CompletableFuture)} and passes it to all
+     * sessions waiting for it.
+     */
+    void complete(String key, List<String> lines) {
+        synchronized (entries) {
+            entries.put(key, lines);
+        }
+        CompletableFuture<List<String>> search = inFlight.remove(key);
+        if (search != null) {
+            search.complete(lines);
+        }
+    }
+
+    /**
+     * Removes search registered with {@link #startSearch(String, CompletableFuture)} which did not finish.
+     */
+    void abort(String key) {
+        CompletableFuture<List<String>> search = inFlight.remove(key);
+        if (search != null) {
+            search.complete(null);
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getShared() {
+        return shared.sum();
+    }
+
+    int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Normalizes {@code go} command limits.
+     *
+     * @return normalized limits, or {@code null} if result of the search depends on anything else than position.
+     */
+    static String goKey(String command) {
+        List<String> tokens = tokenize(command);
+        if (tokens.size() < 3 || tokens.size() % 2 == 0) return null;
+
+        SortedMap<String, String> limits = new TreeMap<>();
+        for (int i = 1; i < tokens.size(); i += 2) {
+            if (!CACHEABLE_LIMITS.contains(tokens.get(i))) return null;
+            limits.put(tokens.get(i), tokens.get(i + 1));
+        }
+        return limits.toString();
+    }
+
+    private static List<String> tokenize(String command) {
+        return Arrays.asList(command.trim().split("\\s+"));
+    }
+
+    /**
+     * Collects output of a single engine search and stores it in cache after {@code bestmove}. Only output of the
+     * last {@code go} passed to engine after the capture was created is collected, so late {@code bestmove} of a
+     * stopped earlier search is not stored under the key of the next one.
+     */
+    class SearchCapture implements UciListener {
+
+        private final String key;
+
+        private final EngineThread engine;
+
+        /**
+         * number of {@code go} commands passed to engine before the captured search.
+         */
+        private final long goCount;
+
+        /**
+         * last info line with principal variation, by {@code multipv} slot.
+         */
+        private final SortedMap<Integer, String> lastInfo = new TreeMap<>();
+
+        private volatile boolean done = false;
+
+        /**
+         * @param engine engine which will run the search, {@code go} must not be passed to it yet.
+         */
+        SearchCapture(String key, EngineThread engine) {
+            this.key = key;
+            this.engine = engine;
+            this.goCount = engine.getGoCount();
+        }
+
+        /**
+         * @param answered number of {@code bestmove} lines including the one being dispatched, if any.
+         * @return whether output belongs to the last {@code go}, which was passed after the capture was created.
+         */
+        private boolean isCaptured(long answered) {
+            long sent = engine.getGoCount();
+            return sent > goCount && answered == sent;
+        }
+
+        @Override
+        public void onInfo(UciInfo info) {
+            if (done || !info.hasPv() || !isCaptured(engine.getBestMoveCount() + 1)) return;
+            lastInfo.put(info.getMultipv(), info.getLine());
+        }
+
+        @Override
+        public void onBestMove(UciBestMove bestMove) {
+            if (done || !isCaptured(engine.getBestMoveCount())) return;
+            done = true;
+            List<String> lines = new ArrayList<>(lastInfo.values());
+            lines.add(bestMove.getLine());
+            complete(key, Collections.unmodifiableList(lines));
+        }
+
+        /**
+         * Aborts search, which result will not be cached.
+         */
+        void abort() {
+            if (done) return;
+            done = true;
+            EvaluationCache.this.abort(key);
+        }
+
+        boolean isDone() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package chess.engine;
+
+import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which searches run when there are more searches than slots. Every search ({@code go} of user engine,
+ * single analysis or batch position) is a {@link Job} of its owner token, and runs only while it holds one of
+ * {@code slots}. Waiting jobs are started in this order:
+ * <ul>
+ *     <li>{@link Priority#INTERACTIVE} jobs before {@link Priority#BATCH} jobs,</li>
+ *     <li>within a priority, weighted fair queuing across owners: owner with the least engine time used, divided by
+ *     its weight, goes first, so one owner can't starve others by submitting many jobs,</li>
+ *     <li>jobs of the same owner in submission order.</li>
+ * </ul>
+ * Running batch jobs are preempted with {@code stop} when interactive job waits for a slot, unless they were
+ * {@link Job#promote() promoted} because a user waits for their result. Every job is stopped when it exceeds
+ * {@code maxMovetime} or {@code maxNodes} budget, which also ends {@code go infinite} searches. Job ends when engine
+ * answers its own {@code go} with {@code bestmove}, late {@code bestmove} of an earlier search doesn't count, or
+ * when it is {@link Job#close() closed}. Time jobs waited for a slot is recorded in {@link ServerMetrics}.
+ */
+class JobScheduler {
+
+    enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    private final int slots;
+
+    /**
+     * maximal search time of a job in ms, {@code 0} if not limited.
+     */
+    private final long maxMovetime;
+
+    /**
+     * maximal number of nodes searched by a job, {@code 0} if not limited.
+     */
+    private final long maxNodes;
+
+    /**
+     * owners with waiting or running jobs by priority.
+     */
+    private final Map<Priority, Map<String, Owner>> queues = new EnumMap<>(Priority.class);
+
+    /**
+     * virtual time by priority, the smallest virtual time of owners with waiting jobs. Owners which start waiting
+     * never get virtual time below it, so idle owners can't save up engine time.
+     */
+    private final Map<Priority, Double> virtualTime = new EnumMap<>(Priority.class);
+
+    private final Set<Job> running = new HashSet<>();
+
+    private int queued;
+
+    private final ServerLogger logger;
+
+    /**
+     * @param slots       maximal number of jobs running at the same time.
+     * @param maxMovetime maximal search time of a job in ms, {@code 0} if not limited.
+     * @param maxNodes    maximal number of nodes searched by a job, {@code 0} if not limited.
+     * @param log         {@code config.LOG}.
+     */
+    JobScheduler(int slots, long maxMovetime, long maxNodes, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.slots = Math.max(1, slots);
+        this.maxMovetime = maxMovetime;
+        this.maxNodes = maxNodes;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new HashMap<>());
+            virtualTime.put(priority, 0.0);
+        }
+    }
+
+    /**
+     * Queues search, which starts when a slot is available.
+     *
+     * @param owner    token of the user.
+     * @param priority priority class.
+     * @param weight   share of the owner, owner with weight 2 gets twice as much engine time as owner with weight 1.
+     * @param engine   engine running the search.
+     * @param start    sends {@code position}/{@code go} commands to engine, run when job gets a slot.
+     * @return queued job.
+     */
+    Job submit(String owner, Priority priority, int weight, EngineThread engine, Runnable start) {
+        Job job = new Job(owner, priority, Math.max(1, weight), engine, start);
+        Job preempted;
+        synchronized (this) {
+            preempted = enqueue(job);
+        }
+        preempt(preempted);
+        dispatch();
+        return job;
+    }
+
+    /**
+     * Adds job to the queue of its owner and priority. Interactive job which can't get a slot preempts a running
+     * batch job, which must be stopped with {@link #preempt(Job)} after the scheduler lock is released.
+     *
+     * @return batch job to preempt, or {@code null}.
+     */
+    private Job enqueue(Job job) {
+        Owner queue = queues.get(job.priority).computeIfAbsent(job.owner, o -> new Owner());
+        queue.weight = job.weight;
+        if (queue.jobs.isEmpty() && queue.running == 0) {
+            queue.virtualTime = Math.max(queue.virtualTime, virtualTime.get(job.priority));
+        }
+        queue.jobs.add(job);
+        queued++;
+
+        if (job.priority == Priority.INTERACTIVE && running.size() >= slots) {
+            for (Job other : running) {
+                if (other.priority == Priority.BATCH && !other.promoted && !other.preempted) {
+                    other.preempted = true;
+                    return other;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void preempt(Job job) {
+        if (job == null) return;
+        logger.log("info", "Batch job of %s preempted", job.engine.getName());
+        job.stop();
+    }
+
+    /**
+     * @return number of waiting jobs.
+     */
+    synchronized int getQueued() {
+        return queued;
+    }
+
+    synchronized int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * Starts waiting jobs while there are free slots.
+     */
+    private void dispatch() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                if (running.size() >= slots || (job = poll()) == null) return;
+                running.add(job);
+                job.state = State.RUNNING;
+            }
+            (job.priority == Priority.INTERACTIVE ? ServerMetrics.JOB_WAIT_INTERACTIVE : ServerMetrics.JOB_WAIT_BATCH)
+                    .record(System.nanoTime() - job.submittedAt);
+            job.run();
+        }
+    }
+
+    /**
+     * @return waiting job with the highest priority and the smallest owner virtual time, or {@code null}.
+     */
+    private Job poll() {
+        for (Priority priority : Priority.values()) {
+            Map<String, Owner> owners = queues.get(priority);
+            Map.Entry<String, Owner> next = null;
+            for (Map.Entry<String, Owner> entry : owners.entrySet()) {
+                if (entry.getValue().jobs.isEmpty()) continue;
+                if (next == null || entry.getValue().virtualTime < next.getValue().virtualTime) {
+                    next = entry;
+                }
+            }
+            if (next == null) continue;
+
+            Owner owner = next.getValue();
+            Job job = owner.jobs.poll();
+            owner.running++;
+            virtualTime.put(priority, owner.virtualTime);
+            queued--;
+            return job;
+        }
+        return null;
+    }
+
+    /**
+     * Frees slot of finished job and charges its owner.
+     */
+    private void finished(Job job, long nanos) {
+        synchronized (this) {
+            running.remove(job);
+            Map<String, Owner> owners = queues.get(job.priority);
+            Owner owner = owners.get(job.owner);
+            if (owner != null) {
+                owner.virtualTime += (double) nanos / owner.weight;
+                owner.running--;
+                if (owner.jobs.isEmpty() && owner.running == 0) owners.remove(job.owner);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes waiting job from queue.
+     *
+     * @return whether job was waiting.
+     */
+    private synchronized boolean dequeue(Job job) {
+        Map<String, Owner> owners = queues.get(job.priority);
+        Owner owner = owners.get(job.owner);
+        if (owner == null || !owner.jobs.remove(job)) return false;
+        if (owner.jobs.isEmpty() && owner.running == 0) owners.remove(job.owner);
+        queued--;
+        return true;
+    }
+
+    private enum State {
+        QUEUED,
+        RUNNING,
+        DONE
+    }
+
+    /**
+     * Waiting jobs of a single owner in one priority class.
+     */
+    private static final class Owner {
+
+        private final Deque<Job> jobs = new ArrayDeque<>();
+
+        private int weight = 1;
+
+        /**
+         * number of running jobs.
+         */
+        private int running;
+
+        /**
+         * engine time in ns used by the owner divided by its weight.
+         */
+        private double virtualTime;
+    }
+
+    /**
+     * Single search.
+     */
+    final class Job implements UciListener {
+
+        private final String owner;
+
+        /**
+         * priority class of the queue which holds the job, guarded by scheduler. Changes only while job waits.
+         */
+        private Priority priority;
+
+        private final int weight;
+
+        private final EngineThread engine;
+
+        private final Runnable start;
+
+        private final long submittedAt = System.nanoTime();
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /**
+         * guarded by scheduler.
+         */
+        private State state = State.QUEUED;
+
+        private volatile boolean preempted;
+
+        /**
+         * whether batch job was raised to interactive priority while running, so it is not preempted.
+         */
+        private volatile boolean promoted;
+
+        private volatile boolean stopSent;
+
+        private long startedAt;
+
+        /**
+         * number of {@code go} commands passed to engine before the job started, output of earlier searches, e.g.
+         * late {@code bestmove} of a stopped search, is ignored.
+         */
+        private long goCount;
+
+        private Job(String owner, Priority priority, int weight, EngineThread engine, Runnable start) {
+            this.owner = owner;
+            this.priority = priority;
+            this.weight = weight;
+            this.engine = engine;
+            this.start = start;
+        }
+
+        private void run() {
+            startedAt = System.nanoTime();
+            goCount = engine.getGoCount();
+            engine.addUciListener(this);
+            start.run();
+            if (maxMovetime > 0) {
+                CompletableFuture.delayedExecutor(maxMovetime, TimeUnit.MILLISECONDS).execute(() -> {
+                    if (!done.isDone()) stop();
+                });
+            }
+        }
+
+        /**
+         * Sends {@code stop} to engine once, job ends when engine answers {@code bestmove}.
+         */
+        private void stop() {
+            if (stopSent) return;
+            stopSent = true;
+            engine.processRawCommand("stop");
+        }
+
+        @Override
+        public void onInfo(UciInfo info) {
+            if (engine.getBestMoveCount() < goCount) return;
+            if (maxNodes > 0 && info.getNodes() >= maxNodes) stop();
+        }
+
+        @Override
+        public void onBestMove(UciBestMove bestMove) {
+            if (engine.getBestMoveCount() <= goCount) return;
+            finish();
+        }
+
+        private void finish() {
+            synchronized (JobScheduler.this) {
+                if (state != State.RUNNING) return;
+                state = State.DONE;
+            }
+            engine.removeUciListener(this);
+            finished(this, System.nanoTime() - startedAt);
+            done.complete(null);
+        }
+
+        /**
+         * Removes waiting job from queue, running job is not affected.
+         *
+         * @return {@code true} if job was waiting, so its search never starts.
+         */
+        boolean cancel() {
+            if (!dequeue(this)) return false;
+            synchronized (JobScheduler.this) {
+                state = State.DONE;
+            }
+            done.complete(null);
+            return true;
+        }
+
+        /**
+         * Removes waiting job from queue, or frees slot of running job without waiting for {@code bestmove}, e.g.
+         * when its engine is stopped.
+         */
+        void close() {
+            if (!cancel()) finish();
+        }
+
+        /**
+         * Raises batch job to interactive priority, e.g. when the user waits for its result. Waiting job moves to
+         * the interactive queue, running job is no longer preempted.
+         *
+         * @return {@code false} if job was preempted already, so its search is cut short.
+         */
+        boolean promote() {
+            Job preempted;
+            synchronized (JobScheduler.this) {
+                if (this.preempted) return false;
+                promoted = true;
+                if (priority == Priority.INTERACTIVE || state != State.QUEUED || !dequeue(this)) return true;
+                priority = Priority.INTERACTIVE;
+                preempted = enqueue(this);
+            }
+            preempt(preempted);
+            dispatch();
+            return true;
+        }
+
+        /**
+         * @return whether batch job was stopped early to free slot for interactive job.
+         */
+        boolean isPreempted() {
+            return preempted;
+        }
+
+        /**
+         * @return future which completes when job ends.
+         */
+        CompletableFuture<Void> getDone() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package chess.engine;
+
+import chess.board.Board;
+import chess.board.Move;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Polyglot opening book, memory-mapped and searched by binary search on position key, so lookups don't read the whole
+ * book and books of any size take no heap. Book entries are 16 bytes, big endian: key, move, weight and learn data,
+ * sorted by key.
+ * <p>
+ * Polyglot keys are computed with the 781 Polyglot random numbers, the {@code Random64} array of Polyglot
+ * {@code book.c} source. They are read from {@link #RANDOM_RESOURCE} on the classpath, or from a separate file when
+ * one is configured. Numbers are verified against the known key of the start position.
+ */
+class OpeningBook {
+
+    /**
+     * Polyglot key of the start position.
+     */
+    static final long START_KEY = 0x463B96181691FC9CL;
+
+    private static final int RANDOM_COUNT = 781;
+
+    /**
+     * classpath resource with the Polyglot random numbers, used when no random file is configured.
+     */
+    static final String RANDOM_RESOURCE = "/polyglot-random64.txt";
+
+    private static final int ENTRY_SIZE = 16;
+
+    /**
+     * books rarely go deeper, positions after more moves are not looked up.
+     */
+    private static final int MAX_PLIES = 40;
+
+    private static final Pattern HEX = Pattern.compile("0x([0-9a-fA-F]{16})");
+
+    private final MappedByteBuffer entries;
+
+    private final int size;
+
+    private final long[] random;
+
+    /**
+     * @param book       Polyglot {@code .bin} book.
+     * @param randomFile file with 781 Polyglot random numbers written as {@code 0x} followed by 16 hex digits,
+     *                   {@code null} to read them from {@link #RANDOM_RESOURCE}.
+     */
+    OpeningBook(Path book, Path randomFile) throws IOException {
+        String source = randomFile == null ? RANDOM_RESOURCE : randomFile.toString();
+        this.random = readRandom(source, randomFile == null
+                ? OpeningBook.class.getResourceAsStream(RANDOM_RESOURCE)
+                : Files.newInputStream(randomFile));
+        if (polyglotKey(Board.startpos()) != START_KEY) {
+            throw new IOException("Random numbers in " + source + " are not Polyglot random numbers");
+        }
+
+        try (FileChannel channel = FileChannel.open(book, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_SIZE != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a Polyglot book: " + book);
+            }
+            this.entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            this.size = (int) (length / ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * @param stream stream of random numbers, closed after reading, {@code null} if resource is missing.
+     */
+    private static long[] readRandom(String source, InputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException(source + " not found, set config.BOOK_RANDOM_FILE");
+        }
+        String text;
+        try (InputStream in = stream) {
+            text = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+
+        List<Long> numbers = new ArrayList<>();
+        Matcher matcher = HEX.matcher(text);
+        while (matcher.find()) {
+            numbers.add(Long.parseUnsignedLong(matcher.group(1), 16));
+        }
+        if (numbers.size() != RANDOM_COUNT) {
+            throw new IOException(String.format("Expected %d random numbers in %s, found %d", RANDOM_COUNT, source,
+                    numbers.size()));
+        }
+        return numbers.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @param position position set by the last {@code position} command.
+     * @return move with the highest weight, {@code null} if position is not in book.
+     */
+    BookMove lookup(Board position) {
+        if (position == null || position.getPly() > MAX_PLIES) return null;
+
+        long key = polyglotKey(position);
+        int index = firstEntry(key);
+        BookMove best = null;
+        for (int i = index; i < size && entries.getLong(i * ENTRY_SIZE) == key; i++) {
+            int weight = entries.getShort(i * ENTRY_SIZE + 10) & 0xFFFF;
+            if (best == null || weight > best.weight) {
+                best = new BookMove(decode(position, entries.getShort(i * ENTRY_SIZE + 8) & 0xFFFF), weight);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return index of the first entry with key not lower than {@code key}, compared as unsigned numbers.
+     */
+    private int firstEntry(long key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(entries.getLong(middle * ENTRY_SIZE), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes Polyglot key of the position. Polyglot numbers pieces {@code 2 * type + 1} for white and
+     * {@code 2 * type} for black, with types in the same order as {@link Board}, and hashes en passant file only if a
+     * pawn of side to move can capture, which is when {@link Board#getEnPassant()} is set.
+     */
+    long polyglotKey(Board position) {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.pieceAt(square);
+            if (piece == Board.NONE) continue;
+            int kind = 2 * (piece % 6) + (piece / 6 == Board.WHITE ? 1 : 0);
+            key ^= random[64 * kind + square];
+        }
+
+        int castling = position.getCastling();
+        for (int right = 0; right < 4; right++) {
+            if ((castling & (1 << right)) != 0) key ^= random[768 + right];
+        }
+        if (position.getEnPassant() != Board.NONE) key ^= random[772 + position.getEnPassant() % 8];
+        if (position.getSideToMove() == Board.WHITE) key ^= random[780];
+        return key;
+    }
+
+    /**
+     * Converts Polyglot move to {@link Move}. Polyglot swaps origin and target square and writes castling as king
+     * capturing own rook, promotion pieces are numbered as in {@link Board}.
+     */
+    private static int decode(Board position, int move) {
+        int to = move & 0x3F, from = (move >> 6) & 0x3F, promotion = (move >> 12) & 0x7;
+        int piece = position.pieceAt(from);
+        if (piece % 6 == Board.KING && (from == 4 || from == 60) && (to == from + 3 || to == from - 4)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+        return Move.of(from, to, promotion > Board.QUEEN ? 0 : promotion);
+    }
+
+    /**
+     * Book move with its weight.
+     */
+    static final class BookMove {
+
+        /**
+         * move without flags.
+         */
+        private final int move;
+
+        private final int weight;
+
+        BookMove(int move, int weight) {
+            this.move = move;
+            this.weight = weight;
+        }
+
+        int getMove() {
+            return move;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+}
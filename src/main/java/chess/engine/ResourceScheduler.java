@@ -0,0 +1,273 @@
+package chess.engine;
+
+import chess.server.ExecutionThreads;
+import chess.server.ServerLogger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Shares CPUs of the host between running engines, so that concurrent engines do not oversubscribe cores. Every
+ * engine gets a budget of {@code Threads}: CPUs are split evenly between engines, every engine gets at least one.
+ * Engines which support {@code Threads} option search with their whole budget unless client asked for fewer threads,
+ * client {@code setoption name Threads} is limited by the budget and {@code setoption name Hash} by
+ * {@code config.ENGINE_MAX_HASH}. Budgets are rebalanced when engines start, stop, or are leased from and returned to
+ * a pool, idle pooled engines don't take any CPUs from busy ones. New budget is applied with {@code setoption} before
+ * the next {@code go}, because engines don't accept options while searching.
+ * <p>
+ * With {@code config.ENGINE_AFFINITY} every engine process is also pinned to its own CPUs with {@code taskset} on
+ * Linux.
+ */
+class ResourceScheduler {
+
+    private static final String THREADS_OPTION = "setoption name threads value ";
+
+    private static final String HASH_OPTION = "setoption name hash value ";
+
+    /**
+     * CPUs available to engines.
+     */
+    private final int[] cpus;
+
+    /**
+     * maximal {@code Hash} in MB, {@code 0} if not limited.
+     */
+    private final int maxHash;
+
+    /**
+     * whether engine processes are pinned to CPUs, disabled when {@code taskset} is not available.
+     */
+    private volatile boolean affinity;
+
+    /**
+     * runs {@code taskset}, so that engine threads don't wait for it.
+     */
+    private final ExecutorService affinityExecutor;
+
+    /**
+     * running engines in start order.
+     */
+    private final List<Slot> slots = new ArrayList<>();
+
+    private final ServerLogger logger;
+
+    /**
+     * @param cpus     CPUs available to engines, e.g. {@code 2-7} or {@code 0,2,4-6}, empty for all CPUs.
+     * @param maxHash  maximal {@code Hash} in MB, {@code 0} if not limited.
+     * @param affinity whether engine processes are pinned to CPUs.
+     * @param log      {@code config.LOG}.
+     */
+    ResourceScheduler(String cpus, int maxHash, boolean affinity, ExecutionThreads threads, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.cpus = parseCpus(cpus);
+        this.maxHash = maxHash;
+        this.affinity = affinity && System.getProperty("os.name", "").startsWith("Linux");
+        this.affinityExecutor = threads.newExecutor("engine-affinity");
+        if (affinity && !this.affinity) {
+            logger.log("error", "CPU affinity is only supported on Linux");
+        }
+    }
+
+    static int[] parseCpus(String cpus) {
+        if (cpus == null || cpus.isBlank()) {
+            int[] all = new int[Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+        SortedSet<Integer> parsed = new TreeSet<>();
+        for (String range : cpus.split(",")) {
+            String[] bounds = range.trim().split("-");
+            int from = Integer.parseInt(bounds[0].trim());
+            int to = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : from;
+            for (int cpu = from; cpu <= to; cpu++) parsed.add(cpu);
+        }
+        return parsed.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Adds started engine process and rebalances budgets of all engines.
+     */
+    synchronized Slot register(EngineThread engine) {
+        Slot slot = new Slot(engine);
+        slots.add(slot);
+        rebalance();
+        return slot;
+    }
+
+    synchronized void unregister(Slot slot) {
+        if (slots.remove(slot)) rebalance();
+    }
+
+    /**
+     * Marks engine idle in a pool or busy, and rebalances budgets of busy engines. {@code Threads} asked for by the
+     * previous client are forgotten when engine returns to the pool.
+     */
+    synchronized void setIdle(Slot slot, boolean idle) {
+        if (slot.idle == idle) return;
+        slot.idle = idle;
+        if (idle) {
+            synchronized (slot) {
+                slot.requestedThreads = 0;
+            }
+        }
+        if (slots.contains(slot)) rebalance();
+    }
+
+    /**
+     * Splits CPUs evenly between busy engines in start order. If there are more engines than CPUs, every engine gets
+     * single CPU and CPUs are shared round-robin. Idle engines keep their CPUs with budget of one thread.
+     */
+    private void rebalance() {
+        List<Slot> busy = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (slot.idle) {
+                slot.assign(1, null);
+            } else {
+                busy.add(slot);
+            }
+        }
+
+        int engines = busy.size();
+        int next = 0;
+        for (int i = 0; i < engines; i++) {
+            int budget = Math.max(1, cpus.length / engines + (i < cpus.length % engines ? 1 : 0));
+            int[] assigned = new int[budget];
+            for (int j = 0; j < budget; j++) {
+                assigned[j] = cpus[next++ % cpus.length];
+            }
+            busy.get(i).assign(budget, assigned);
+        }
+    }
+
+    /**
+     * Pins all threads of engine process to {@code cpuList} with {@code taskset}.
+     */
+    private void pin(EngineThread engine, String cpuList) {
+        if (!affinity) return;
+        affinityExecutor.execute(() -> {
+            long pid = engine.getPid();
+            if (pid < 0) return;
+            try {
+                Process taskset = new ProcessBuilder("taskset", "-a", "-p", "-c", cpuList, Long.toString(pid))
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (taskset.waitFor() != 0) {
+                    logger.log("error", "taskset failed for %s on CPUs %s", engine.getName(), cpuList);
+                }
+            } catch (IOException e) {
+                affinity = false;
+                logger.log("error", "CPU affinity disabled, taskset not available: %s", e.getMessage());
+            } catch (InterruptedException ignored) {
+            }
+        });
+    }
+
+    /**
+     * Resources of a single running engine.
+     */
+    final class Slot {
+
+        private final EngineThread engine;
+
+        /**
+         * whether engine waits in a pool, guarded by scheduler.
+         */
+        private boolean idle;
+
+        private int budget = 1;
+
+        private String cpuList;
+
+        /**
+         * {@code Threads} asked for by client, {@code 0} if client did not set it.
+         */
+        private int requestedThreads;
+
+        /**
+         * {@code Threads} which engine was told to use, {@code 0} if engine uses its default.
+         */
+        private int appliedThreads;
+
+        private volatile boolean supportsThreads;
+
+        private Slot(EngineThread engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * @param assigned CPUs of engine, {@code null} keeps the current ones.
+         */
+        private void assign(int budget, int[] assigned) {
+            String cpuList = assigned == null ? null : Arrays.stream(assigned).sorted().distinct()
+                    .mapToObj(Integer::toString).reduce((a, b) -> a + "," + b).orElse("");
+            boolean pin;
+            synchronized (this) {
+                this.budget = budget;
+                pin = cpuList != null && !cpuList.equals(this.cpuList);
+                if (pin) this.cpuList = cpuList;
+            }
+            if (pin) pin(engine, cpuList);
+        }
+
+        synchronized int getBudget() {
+            return budget;
+        }
+
+        /**
+         * @return {@code Threads} engine should use: client value limited by budget, or whole budget.
+         */
+        private int threads() {
+            return requestedThreads > 0 ? Math.min(requestedThreads, budget) : budget;
+        }
+
+        /**
+         * Notes options supported by engine from its {@code uci} output.
+         */
+        void onEngineOutput(String line) {
+            if (!supportsThreads && line.startsWith("option name Threads ")) {
+                supportsThreads = true;
+            }
+        }
+
+        /**
+         * @return command which must be sent to engine before {@code command} to apply the current budget, or
+         * {@code null}.
+         */
+        synchronized String before(String command) {
+            if (!supportsThreads || !command.trim().startsWith("go")) return null;
+            int threads = threads();
+            if (threads == appliedThreads) return null;
+            appliedThreads = threads;
+            return "setoption name Threads value " + threads;
+        }
+
+        /**
+         * @return {@code command} with {@code Threads} and {@code Hash} values limited by budget.
+         */
+        synchronized String filter(String command) {
+            String option = command.trim().toLowerCase(Locale.ROOT);
+            if (option.startsWith(THREADS_OPTION)) {
+                requestedThreads = parseValue(option, THREADS_OPTION);
+                appliedThreads = threads();
+                return "setoption name Threads value " + appliedThreads;
+            }
+            if (maxHash > 0 && option.startsWith(HASH_OPTION)) {
+                int hash = parseValue(option, HASH_OPTION);
+                if (hash > maxHash || hash <= 0) {
+                    return "setoption name Hash value " + maxHash;
+                }
+            }
+            return command;
+        }
+
+        private int parseValue(String option, String prefix) {
+            try {
+                return Integer.parseInt(option.substring(prefix.length()).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package chess.engine;
+
+import chess.board.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Analyses positions which are likely to come next while the user thinks, so {@code go} in one of them is answered at
+ * once. Positions are predicted from output of user search: position after best move and expected reply
+ * ({@code ponder} move), and positions after the first move of every {@code multipv} line. Every prediction is
+ * searched on engine from the pool as batch job, so searches of users preempt it, with a single thread. Options
+ * set for the search are set back to defaults when the engine returns to the pool.
+ * <p>
+ * Number of speculative searches on the host, and so the number of CPUs they use, is limited. Predictions which
+ * don't get a CPU are not searched.
+ */
+class Speculator {
+
+    private final EngineHandler engineHandler;
+
+    /**
+     * takes engines from the pool, starting engine may block.
+     */
+    private final Executor executor;
+
+    private final int maxSearches;
+
+    private final int maxPredictions;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * @param maxSearches    maximal number of speculative searches on the host.
+     * @param maxPredictions maximal number of positions searched after a single user search.
+     */
+    Speculator(EngineHandler engineHandler, Executor executor, int maxSearches, int maxPredictions) {
+        this.engineHandler = engineHandler;
+        this.executor = executor;
+        this.maxSearches = maxSearches;
+        this.maxPredictions = maxPredictions;
+    }
+
+    int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * Starts speculative search unless all CPUs for speculation are taken.
+     *
+     * @param owner    token of the user, used for fair share of job slots.
+     * @param options  {@code setoption} commands of the user.
+     * @param position {@code position} command.
+     * @param go       {@code go} command with limits which don't depend on anything else than position.
+     * @return started search, {@code null} if there was no free CPU.
+     */
+    Search start(String owner, String enginePath, List<String> options, String position, String go) {
+        if (!reserve()) return null;
+
+        Search search = new Search(owner, enginePath, options, position, go);
+        try {
+            CompletableFuture.supplyAsync(() -> engineHandler.acquireEngine(enginePath), executor)
+                    .whenComplete((engineThread, e) -> search.run(engineThread));
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            return null;
+        }
+        return search;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = running.get();
+            if (current >= maxSearches) return false;
+        } while (!running.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Collects the first two moves of principal variation of every {@code multipv} line of user search and predicts
+     * moves after {@code bestmove}.
+     */
+    final class Prediction implements UciListener {
+
+        private final EngineThread engineThread;
+
+        /**
+         * receives move sequences, the most likely first, each leading to a predicted position.
+         */
+        private final Consumer<List<int[]>> predicted;
+
+        /**
+         * the first two moves of the last principal variation, by {@code multipv} slot.
+         */
+        private final SortedMap<Integer, int[]> lines = new TreeMap<>();
+
+        private volatile boolean done;
+
+        Prediction(EngineThread engineThread, Consumer<List<int[]>> predicted) {
+            this.engineThread = engineThread;
+            this.predicted = predicted;
+        }
+
+        @Override
+        public void onInfo(UciInfo info) {
+            if (done || !info.hasPv()) return;
+            lines.put(info.getMultipv(), new int[]{info.getPvMove(0),
+                    info.getPvLength() > 1 ? info.getPvMove(1) : -1});
+        }
+
+        @Override
+        public void onBestMove(UciBestMove bestMove) {
+            if (done) return;
+            cancel();
+
+            List<int[]> moves = new ArrayList<>();
+            int best = bestMove.getMove(), reply = bestMove.getPonder();
+            int[] main = lines.get(1);
+            if (!isMove(reply) && main != null && main[0] == best) reply = main[1];
+            if (isMove(best) && isMove(reply)) {
+                moves.add(new int[]{best, reply});
+            }
+            for (int[] line : lines.values()) {
+                if (moves.size() >= maxPredictions) break;
+                if (isMove(line[0])) moves.add(new int[]{line[0]});
+            }
+            if (!moves.isEmpty()) predicted.accept(moves);
+        }
+
+        /**
+         * @return whether {@code move} is a real move, not null move {@link Move#NONE} or missing move {@code -1}.
+         */
+        private boolean isMove(int move) {
+            return move > Move.NONE;
+        }
+
+        /**
+         * Stops listening, nothing is predicted.
+         */
+        void cancel() {
+            done = true;
+            engineThread.removeUciListener(this);
+        }
+    }
+
+    /**
+     * Speculative search. Until it is adopted by user {@code go}, it keeps the last {@code info} line with
+     * principal variation of every {@code multipv} slot and {@code bestmove} line, after that all output goes to
+     * the user. Adopted search runs with interactive priority.
+     */
+    final class Search implements UciListener {
+
+        private final String owner;
+
+        private final String enginePath;
+
+        private final List<String> options;
+
+        private final String position;
+
+        private final String go;
+
+        private final SortedMap<Integer, String> lastInfo = new TreeMap<>();
+
+        private String bestMove;
+
+        /**
+         * output of adopted search, {@code null} before it is adopted.
+         */
+        private Consumer<String> output;
+
+        /**
+         * run when adopted search can't get an engine, {@code null} before it is adopted.
+         */
+        private Runnable fallback;
+
+        private EngineThread engineThread;
+
+        private JobScheduler.Job job;
+
+        /**
+         * whether {@code go} was sent to engine.
+         */
+        private boolean started;
+
+        private boolean cancelled;
+
+        private Search(String owner, String enginePath, List<String> options, String position, String go) {
+            this.owner = owner;
+            this.enginePath = enginePath;
+            this.options = options;
+            this.position = position;
+            this.go = go;
+        }
+
+        private void run(EngineThread engine) {
+            if (engine == null) {
+                running.decrementAndGet();
+                Runnable fallback;
+                synchronized (this) {
+                    fallback = cancelled ? null : this.fallback;
+                    cancelled = true;
+                    output = null;
+                }
+                if (fallback != null) fallback.run();
+                return;
+            }
+
+            JobScheduler.Job scheduled;
+            synchronized (this) {
+                engineThread = engine;
+                if (cancelled) {
+                    finished();
+                    return;
+                }
+                JobScheduler.Priority priority = output != null
+                        ? JobScheduler.Priority.INTERACTIVE : JobScheduler.Priority.BATCH;
+                job = scheduled = engineHandler.schedule(owner, priority, engine, this::begin);
+            }
+            scheduled.getDone().whenComplete((r, e) -> {
+                synchronized (this) {
+                    finished();
+                }
+            });
+        }
+
+        /**
+         * @return {@code go} command of the search.
+         */
+        String getGo() {
+            return go;
+        }
+
+        private synchronized void begin() {
+            if (cancelled) {
+                job.close();
+                return;
+            }
+            started = true;
+            engineThread.addUciListener(this);
+            for (String option : options) {
+                if (!option.toLowerCase().startsWith("setoption name threads ")) engineThread.processRawCommand(option);
+            }
+            engineThread.processRawCommand("setoption name Threads value 1");
+            engineThread.processRawCommand(position);
+            engineThread.processRawCommand(go);
+        }
+
+        private void finished() {
+            engineThread.removeUciListener(this);
+            engineHandler.releaseEngine(enginePath, engineThread);
+            running.decrementAndGet();
+        }
+
+        /**
+         * Passes result found so far to {@code output}, followed by the rest of the search. Search which still waits
+         * is raised to interactive priority.
+         *
+         * @param fallback run instead of the search if it can't get an engine, not called with the lock held.
+         * @return {@code false} if search was cancelled or stopped early, so its result is not valid.
+         */
+        synchronized boolean adopt(Consumer<String> output, Runnable fallback) {
+            if (cancelled || (job != null && bestMove == null && !job.promote())) return false;
+
+            lastInfo.values().forEach(output);
+            if (bestMove != null) {
+                output.accept(bestMove);
+            } else {
+                this.output = output;
+                this.fallback = fallback;
+            }
+            return true;
+        }
+
+        /**
+         * Stops adopted search, the user gets {@code bestmove}. Search which has not started yet is cancelled, so
+         * there is nothing to stop.
+         *
+         * @return {@code false} if search was cancelled, the user gets no {@code bestmove} from it.
+         */
+        boolean stop() {
+            synchronized (this) {
+                if (started) {
+                    if (bestMove == null) engineThread.processRawCommand("stop");
+                    return true;
+                }
+            }
+            cancel();
+            return false;
+        }
+
+        /**
+         * Drops search which is no longer needed, its output is not passed on.
+         */
+        synchronized void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            output = null;
+            fallback = null;
+            if (job != null && !job.cancel() && bestMove == null) {
+                engineThread.processRawCommand("stop");
+            }
+        }
+
+        @Override
+        public synchronized void onInfo(UciInfo info) {
+            if (bestMove != null) return;
+            if (info.hasPv()) lastInfo.put(info.getMultipv(), info.getLine());
+            if (output != null) output.accept(info.getLine());
+        }
+
+        @Override
+        public synchronized void onBestMove(UciBestMove bestMove) {
+            if (this.bestMove != null) return;
+            this.bestMove = bestMove.getLine();
+            if (output != null) output.accept(this.bestMove);
+            output = null;
+            fallback = null;
+        }
+    }
+}
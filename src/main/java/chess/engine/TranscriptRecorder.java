@@ -0,0 +1,224 @@
+package chess.engine;
+
+import chess.server.ServerLogger;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records UCI exchange of all engines into rotating memory-mapped files, so full transcripts cost a few stores per
+ * line instead of a log record. Writers reserve space in the current file with a single CAS and write directly into
+ * the mapping, the operating system writes pages to disk. When a file is full, the next one is created and files
+ * beyond {@code maxFiles} are deleted, oldest first.
+ * <p>
+ * File starts with {@link #HEADER_SIZE} bytes header: {@link #MAGIC}, wall clock time in ms and {@link System#nanoTime()}
+ * when the file was created. Header is followed by records, all little endian:
+ * <pre>
+ * int  length of line
+ * byte type: {@link #COMMAND}, {@link #OUTPUT}, {@link #START} or {@link #STOP}
+ * int  engine number
+ * long {@link System#nanoTime()}
+ * byte[length] line, ASCII
+ * </pre>
+ * Length is written first and type last, so a record with type {@code 0} and non-zero length was reserved but not
+ * completed, e.g. because the server stopped while writing it, and readers skip it. Type and length {@code 0} mark the
+ * end of recorded data. Characters outside ASCII are recorded as {@code ?}.
+ */
+class TranscriptRecorder {
+
+    static final long MAGIC = 0x3156435254494355L; // "UCITRCV1" in little endian
+
+    static final int HEADER_SIZE = 24;
+
+    static final int RECORD_HEADER_SIZE = 17;
+
+    static final byte COMMAND = 1;
+
+    static final byte OUTPUT = 2;
+
+    static final byte START = 3;
+
+    static final byte STOP = 4;
+
+    static final String FILE_PREFIX = "transcript-";
+
+    static final String FILE_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    private final int fileSize;
+
+    private final int maxFiles;
+
+    private final AtomicInteger fileNumber = new AtomicInteger();
+
+    private volatile Segment segment;
+
+    private final ServerLogger logger;
+
+    /**
+     * @param directory directory of transcript files, created if it does not exist.
+     * @param fileSize  size of single file in bytes.
+     * @param maxFiles  number of kept files.
+     * @param log       {@code config.LOG}.
+     */
+    TranscriptRecorder(Path directory, int fileSize, int maxFiles, boolean log) throws IOException {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        if (fileSize < HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Transcript file size too small: " + fileSize);
+        }
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.maxFiles = Math.max(1, maxFiles);
+        Files.createDirectories(directory);
+        this.segment = newSegment();
+    }
+
+    void command(int engine, String command) {
+        int length = command.length();
+        if (length > 0 && command.charAt(length - 1) == '\n') length--;
+        record(COMMAND, engine, command, length);
+    }
+
+    void output(int engine, String line) {
+        record(OUTPUT, engine, line, line.length());
+    }
+
+    void start(int engine, String enginePath) {
+        record(START, engine, enginePath, enginePath.length());
+    }
+
+    void stop(int engine, String info) {
+        record(STOP, engine, info, info.length());
+    }
+
+    /**
+     * Writes record, records which don't fit into a single file are skipped.
+     */
+    private void record(byte type, int engine, String line, int length) {
+        long now = System.nanoTime();
+        int size = RECORD_HEADER_SIZE + length;
+        if (HEADER_SIZE + size > fileSize) return;
+
+        Segment segment = this.segment;
+        int position;
+        while ((position = segment.reserve(size)) < 0) {
+            segment = rotate(segment);
+            if (segment == null) return;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(position, length);
+        buffer.putInt(position + 5, engine);
+        buffer.putLong(position + 9, now);
+        int offset = position + RECORD_HEADER_SIZE;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            buffer.put(offset + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+        buffer.put(position + 4, type);
+    }
+
+    /**
+     * Replaces full segment by a new file.
+     *
+     * @return current segment, or {@code null} if new file could not be created.
+     */
+    private synchronized Segment rotate(Segment full) {
+        if (segment != full) return segment;
+        try {
+            segment = newSegment();
+        } catch (IOException e) {
+            logger.log("error", "Transcript file could not be created: %s", e.getMessage());
+            return null;
+        }
+        deleteOldFiles();
+        return segment;
+    }
+
+    private Segment newSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%d-%04d%s", FILE_PREFIX, System.currentTimeMillis(),
+                fileNumber.incrementAndGet(), FILE_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putLong(8, System.currentTimeMillis());
+            buffer.putLong(16, System.nanoTime());
+            logger.log("status", "Recording transcript to %s", file);
+            return new Segment(buffer, fileSize);
+        }
+    }
+
+    private void deleteOldFiles() {
+        List<Path> files = files(directory);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+            } catch (IOException e) {
+                logger.log("error", "Transcript file could not be deleted: %s", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes recorded data of the current file to disk.
+     */
+    void force() {
+        segment.buffer.force();
+    }
+
+    /**
+     * @return transcript files in {@code directory}, oldest first.
+     */
+    static List<Path> files(Path directory) {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Single mapped file.
+     */
+    private static final class Segment {
+
+        private final MappedByteBuffer buffer;
+
+        private final int capacity;
+
+        private final AtomicInteger position = new AtomicInteger(HEADER_SIZE);
+
+        Segment(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return position of reserved {@code size} bytes, or {@code -1} if file is full.
+         */
+        int reserve(int size) {
+            int current;
+            do {
+                current = position.get();
+                if (current + size > capacity) return -1;
+            } while (!position.compareAndSet(current, current + size));
+            return current;
+        }
+    }
+}
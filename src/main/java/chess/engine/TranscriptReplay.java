@@ -0,0 +1,190 @@
+package chess.engine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Reads transcripts written by {@link TranscriptRecorder} and feeds recorded engine output back to
+ * {@link EngineThread.EngineOutputListener listeners}, at original or maximum speed, to reproduce recorded load in
+ * benchmarks and load tests.
+ * <p>
+ * Can be run as a tool: {@code TranscriptReplay <file or directory> [--engine=N] [--replay] [--speed=original|max]}.
+ * Prints the transcript, or with {@code --replay} replays engine output to a counting listener and prints the
+ * achieved rate.
+ */
+public class TranscriptReplay {
+
+    private final List<Path> files;
+
+    /**
+     * @param path transcript file, or directory with transcript files, which are read oldest first.
+     */
+    TranscriptReplay(Path path) {
+        this.files = Files.isDirectory(path) ? TranscriptRecorder.files(path) : List.of(path);
+    }
+
+    /**
+     * Passes every completed record to {@code consumer} in recorded order.
+     */
+    void read(Consumer<Entry> consumer) throws IOException {
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.limit() < TranscriptRecorder.HEADER_SIZE || buffer.getLong(0) != TranscriptRecorder.MAGIC) {
+                    throw new IOException("Not a transcript file: " + file);
+                }
+
+                int position = TranscriptRecorder.HEADER_SIZE;
+                while (position + TranscriptRecorder.RECORD_HEADER_SIZE <= buffer.limit()) {
+                    int length = buffer.getInt(position);
+                    byte type = buffer.get(position + 4);
+                    if (type == 0 && length == 0) break;
+                    int end = position + TranscriptRecorder.RECORD_HEADER_SIZE + length;
+                    if (length < 0 || end > buffer.limit()) break;
+
+                    if (type != 0) {
+                        byte[] line = new byte[length];
+                        buffer.get(position + TranscriptRecorder.RECORD_HEADER_SIZE, line);
+                        consumer.accept(new Entry(type, buffer.getInt(position + 5), buffer.getLong(position + 9),
+                                new String(line, StandardCharsets.US_ASCII)));
+                    }
+                    position = end;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes recorded engine output lines to {@code listener}.
+     *
+     * @param engine        number of replayed engine, {@code -1} replays output of all engines.
+     * @param originalSpeed whether lines are passed with recorded delays, or as fast as possible.
+     * @return number of replayed lines.
+     */
+    long replay(int engine, EngineThread.EngineOutputListener listener, boolean originalSpeed) throws IOException {
+        long[] replayed = new long[1];
+        long[] recordedStart = {-1};
+        long start = System.nanoTime();
+        read(entry -> {
+            if (entry.getType() != TranscriptRecorder.OUTPUT) return;
+            if (engine >= 0 && entry.getEngine() != engine) return;
+
+            if (originalSpeed) {
+                if (recordedStart[0] < 0) recordedStart[0] = entry.getNanos();
+                long delay;
+                while ((delay = start + entry.getNanos() - recordedStart[0] - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            listener.onEngineOutput(entry.getLine());
+            replayed[0]++;
+        });
+        return replayed[0];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = null;
+        int engine = -1;
+        boolean replay = false;
+        boolean originalSpeed = true;
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = Integer.parseInt(arg.substring("--engine=".length()));
+            } else if (arg.equals("--replay")) {
+                replay = true;
+            } else if (arg.startsWith("--speed=")) {
+                originalSpeed = !arg.substring("--speed=".length()).equals("max");
+            } else {
+                path = Paths.get(arg);
+            }
+        }
+        if (path == null) {
+            System.err.println("Usage: TranscriptReplay <file or directory> [--engine=N] [--replay] "
+                    + "[--speed=original|max]");
+            System.exit(1);
+        }
+
+        TranscriptReplay transcript = new TranscriptReplay(path);
+        if (replay) {
+            long start = System.nanoTime();
+            long[] bytes = new long[1];
+            long lines = transcript.replay(engine, line -> bytes[0] += line.length(), originalSpeed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d lines, %d bytes in %.3f s (%.0f lines/s)%n", lines, bytes[0], seconds,
+                    lines / seconds);
+            return;
+        }
+
+        int selected = engine;
+        long[] first = {-1};
+        transcript.read(entry -> {
+            if (selected >= 0 && entry.getEngine() != selected) return;
+            if (first[0] < 0) first[0] = entry.getNanos();
+            System.out.printf("%12.3f ms engine-%d %s %s%n", (entry.getNanos() - first[0]) / 1e6, entry.getEngine(),
+                    entry.getDirection(), entry.getLine());
+        });
+    }
+
+    /**
+     * Single recorded line.
+     */
+    static final class Entry {
+
+        private final byte type;
+
+        private final int engine;
+
+        private final long nanos;
+
+        private final String line;
+
+        Entry(byte type, int engine, long nanos, String line) {
+            this.type = type;
+            this.engine = engine;
+            this.nanos = nanos;
+            this.line = line;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        int getEngine() {
+            return engine;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} of the recording JVM.
+         */
+        long getNanos() {
+            return nanos;
+        }
+
+        String getLine() {
+            return line;
+        }
+
+        /**
+         * @return {@code >} for commands, {@code <} for engine output, {@code *} for engine start and stop.
+         */
+        String getDirection() {
+            switch (type) {
+                case TranscriptRecorder.COMMAND: return ">";
+                case TranscriptRecorder.OUTPUT: return "<";
+                default: return "*";
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package chess.engine;
+
+import chess.board.Move;
+
+/**
+ * Parsed engine {@code bestmove} line. Single instance is reused by {@link UciParser} for every line.
+ */
+public final class UciBestMove {
+
+    private String line;
+
+    int move;
+    int ponder;
+
+    void reset(String line) {
+        this.line = line;
+        move = Move.NONE;
+        ponder = -1;
+    }
+
+    /**
+     * @return raw engine output line.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * @return best move encoded with {@link Move} without flags, {@link Move#NONE} for null move.
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * @return expected opponent reply encoded with {@link Move} without flags, {@code -1} if engine did not provide it.
+     */
+    public int getPonder() {
+        return ponder;
+    }
+}
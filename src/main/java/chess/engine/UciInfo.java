@@ -0,0 +1,153 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Parsed engine {@code info} line. Single instance is reused by {@link UciParser} for every line, so listeners must
+ * copy values they want to keep. Missing numeric values are equal to {@code -1}.
+ */
+public final class UciInfo {
+
+    public enum ScoreType { NONE, CP, MATE }
+
+    public enum Bound { EXACT, LOWER, UPPER }
+
+    private String line;
+
+    int depth;
+    int seldepth;
+    int multipv;
+    long time;
+    long nodes;
+    long nps;
+    int hashfull;
+    long tbhits;
+    int currmove;
+    int currmovenumber;
+
+    ScoreType scoreType;
+    int score;
+    Bound bound;
+
+    int[] pv = new int[64];
+    int pvLength;
+
+    /**
+     * index of the text after {@code string} keyword, {@code -1} if there is no such keyword.
+     */
+    int stringStart;
+
+    void reset(String line) {
+        this.line = line;
+        depth = -1;
+        seldepth = -1;
+        multipv = 1;
+        time = -1;
+        nodes = -1;
+        nps = -1;
+        hashfull = -1;
+        tbhits = -1;
+        currmove = -1;
+        currmovenumber = -1;
+        scoreType = ScoreType.NONE;
+        score = 0;
+        bound = Bound.EXACT;
+        pvLength = 0;
+        stringStart = -1;
+    }
+
+    void addPvMove(int move) {
+        if (pvLength == pv.length) {
+            pv = Arrays.copyOf(pv, pv.length * 2);
+        }
+        pv[pvLength++] = move;
+    }
+
+    /**
+     * @return raw engine output line.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSeldepth() {
+        return seldepth;
+    }
+
+    public int getMultipv() {
+        return multipv;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNps() {
+        return nps;
+    }
+
+    public int getHashfull() {
+        return hashfull;
+    }
+
+    public long getTbhits() {
+        return tbhits;
+    }
+
+    /**
+     * @return move encoded with {@link chess.board.Move} without flags.
+     */
+    public int getCurrmove() {
+        return currmove;
+    }
+
+    public int getCurrmovenumber() {
+        return currmovenumber;
+    }
+
+    public ScoreType getScoreType() {
+        return scoreType;
+    }
+
+    /**
+     * @return score in centipawns or moves to mate, depending on {@link #getScoreType()}.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    public Bound getBound() {
+        return bound;
+    }
+
+    public boolean hasPv() {
+        return pvLength > 0;
+    }
+
+    public int getPvLength() {
+        return pvLength;
+    }
+
+    /**
+     * @param i index of the move in principal variation.
+     * @return move encoded with {@link chess.board.Move} without flags.
+     */
+    public int getPvMove(int i) {
+        return pv[i];
+    }
+
+    /**
+     * @return text after {@code string} keyword, or {@code null} if there is no such text.
+     */
+    public String getString() {
+        return stringStart < 0 ? null : line.substring(stringStart);
+    }
+}
@@ -0,0 +1,31 @@
+package chess.engine;
+
+/**
+ * Receives engine output parsed by {@link UciParser}. Passed objects are reused for next lines.
+ */
+public interface UciListener {
+
+    /**
+     * Will be called every time engine outputs {@code info} line.
+     *
+     * @param info parsed line.
+     */
+    default void onInfo(UciInfo info) {
+    }
+
+    /**
+     * Will be called every time engine outputs {@code bestmove} line.
+     *
+     * @param bestMove parsed line.
+     */
+    default void onBestMove(UciBestMove bestMove) {
+    }
+
+    /**
+     * Will be called for every other engine output line.
+     *
+     * @param line engine output line.
+     */
+    default void onOther(String line) {
+    }
+}
@@ -0,0 +1,258 @@
+package chess.engine;
+
+import chess.board.Move;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Streaming parser of engine output. Lines are scanned in place, without regular expressions or splitting, into
+ * reused {@link UciInfo} and {@link UciBestMove} objects which are passed to {@link UciListener listeners}. A single
+ * parser must only be used by one thread at a time.
+ */
+public class UciParser implements EngineThread.EngineOutputListener {
+
+    private final List<UciListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final UciInfo info = new UciInfo();
+
+    private final UciBestMove bestMove = new UciBestMove();
+
+    /**
+     * current position in {@link #line}.
+     */
+    private int pos;
+
+    private String line;
+
+    public void addListener(UciListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(UciListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onEngineOutput(String output) {
+        parse(output);
+    }
+
+    /**
+     * Parses {@code line} and passes result to listeners. Every listener gets the line even if another listener
+     * throws exception.
+     *
+     * @param line engine output line.
+     * @throws RuntimeException the first exception thrown by a listener, after all listeners were notified.
+     */
+    public void parse(String line) {
+        this.line = line;
+        this.pos = 0;
+
+        int end = nextToken();
+        boolean isInfo = matches(end, "info"), isBestMove = !isInfo && matches(end, "bestmove");
+        if (isInfo) {
+            parseInfo(line);
+        } else if (isBestMove) {
+            parseBestMove(line);
+        }
+
+        RuntimeException failure = null;
+        for (UciListener listener : listeners) {
+            try {
+                if (isInfo) {
+                    listener.onInfo(info);
+                } else if (isBestMove) {
+                    listener.onBestMove(bestMove);
+                } else {
+                    listener.onOther(line);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Parses {@code info} line. Unknown keywords are skipped.
+     */
+    UciInfo parseInfo(String line) {
+        this.line = line;
+        pos = nextToken(0);
+        info.reset(line);
+
+        int end;
+        while ((end = nextToken()) > pos) {
+            int start = pos;
+            pos = end;
+            switch (line.charAt(start)) {
+                case 'd':
+                    if (matches(start, end, "depth")) info.depth = (int) nextNumber();
+                    break;
+                case 's':
+                    if (matches(start, end, "seldepth")) {
+                        info.seldepth = (int) nextNumber();
+                    } else if (matches(start, end, "score")) {
+                        parseScore();
+                    } else if (matches(start, end, "string")) {
+                        skipSpaces();
+                        info.stringStart = pos;
+                        pos = line.length();
+                    }
+                    break;
+                case 'm':
+                    if (matches(start, end, "multipv")) info.multipv = (int) nextNumber();
+                    break;
+                case 't':
+                    if (matches(start, end, "time")) {
+                        info.time = nextNumber();
+                    } else if (matches(start, end, "tbhits")) {
+                        info.tbhits = nextNumber();
+                    }
+                    break;
+                case 'n':
+                    if (matches(start, end, "nodes")) {
+                        info.nodes = nextNumber();
+                    } else if (matches(start, end, "nps")) {
+                        info.nps = nextNumber();
+                    }
+                    break;
+                case 'h':
+                    if (matches(start, end, "hashfull")) info.hashfull = (int) nextNumber();
+                    break;
+                case 'c':
+                    if (matches(start, end, "currmove")) {
+                        info.currmove = nextMove();
+                    } else if (matches(start, end, "currmovenumber")) {
+                        info.currmovenumber = (int) nextNumber();
+                    }
+                    break;
+                case 'p':
+                    if (matches(start, end, "pv")) {
+                        int move;
+                        while ((move = nextMove()) >= 0) {
+                            info.addPvMove(move);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Parses {@code bestmove} line.
+     */
+    UciBestMove parseBestMove(String line) {
+        this.line = line;
+        pos = nextToken(0);
+        bestMove.reset(line);
+
+        int move = nextMove();
+        if (move >= 0) bestMove.move = move;
+
+        int end = nextToken();
+        if (matches(end, "ponder")) {
+            pos = end;
+            bestMove.ponder = nextMove();
+        }
+        return bestMove;
+    }
+
+    private void parseScore() {
+        int end = nextToken();
+        if (matches(end, "cp")) {
+            info.scoreType = UciInfo.ScoreType.CP;
+        } else if (matches(end, "mate")) {
+            info.scoreType = UciInfo.ScoreType.MATE;
+        } else {
+            return;
+        }
+        pos = end;
+        info.score = (int) nextNumber();
+
+        end = nextToken();
+        if (matches(end, "lowerbound")) {
+            info.bound = UciInfo.Bound.LOWER;
+            pos = end;
+        } else if (matches(end, "upperbound")) {
+            info.bound = UciInfo.Bound.UPPER;
+            pos = end;
+        }
+    }
+
+    /**
+     * @return end of the first token after {@code start}.
+     */
+    private int nextToken(int start) {
+        pos = start;
+        return nextToken();
+    }
+
+    /**
+     * Skips spaces and returns end of the next token, without consuming it.
+     */
+    private int nextToken() {
+        skipSpaces();
+        int end = pos;
+        while (end < line.length() && line.charAt(end) != ' ') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Consumes next token if it is a number.
+     *
+     * @return parsed number, or {@code -1} if next token is not a number.
+     */
+    private long nextNumber() {
+        int end = nextToken();
+        int i = pos;
+        boolean negative = i < end && line.charAt(i) == '-';
+        if (negative) i++;
+        if (i == end) return -1;
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        pos = end;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Consumes next token if it is a move.
+     *
+     * @return move encoded with {@link Move} without flags, or {@code -1} if next token is not a move.
+     */
+    private int nextMove() {
+        int end = nextToken();
+        int move = Move.parseUci(line, pos, end);
+        if (move >= 0) pos = end;
+        return move;
+    }
+
+    private void skipSpaces() {
+        while (pos < line.length() && line.charAt(pos) == ' ') {
+            pos++;
+        }
+    }
+
+    private boolean matches(int end, String keyword) {
+        return matches(pos, end, keyword);
+    }
+
+    private boolean matches(int start, int end, String keyword) {
+        return end - start == keyword.length() && line.startsWith(keyword, start);
+    }
+}
@@ -4,6 +4,7 @@ import chess.server.ServerLogger;
 import chess.server.ServerStatus;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -25,9 +26,12 @@ public class ExceptionHandlerFilter extends OncePerRequestFilter {
     public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         try {
             filterChain.doFilter(request, response);
+        } catch (ResponseStatusException e) {
+            logger.log("error", e.getStatus().toString());
+            response.sendError(e.getRawStatusCode(), e.getReason());
         } catch (RuntimeException e) {
-            logger.log("error", HttpStatus.valueOf(serverStatus.getServerStatus()).toString());
-            response.sendError(serverStatus.getServerStatus());
+            logger.log("error", HttpStatus.INTERNAL_SERVER_ERROR.toString());
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
         }
     }
 }
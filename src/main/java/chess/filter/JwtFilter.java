@@ -2,10 +2,9 @@ package chess.filter;
 
 import chess.Constants;
 import chess.server.ServerLogger;
+import chess.server.ServerMetrics;
 import chess.server.ServerStatus;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.filter.GenericFilterBean;
 import org.springframework.web.server.ResponseStatusException;
@@ -16,6 +15,7 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * Filter for user authorization with JWT
@@ -27,61 +27,82 @@ public class JwtFilter extends GenericFilterBean {
     public static final String ERROR_INVALID_TOKEN = "Invalid token";
     public static final String OK = "OK";
 
+    /**
+     * Name of the request attribute which contains verified user token.
+     */
+    public static final String TOKEN_ATTRIBUTE = "token";
+
     private final ServerStatus serverStatus;
 
-    private final Constants constantsProperties;
+    private final TokenVerifier tokenVerifier;
 
     private final ServerLogger logger;
 
+    /**
+     * paths which need a valid token but don't take a user slot, e.g. metrics scraped by monitoring.
+     */
+    private final Set<String> sessionlessPaths;
+
     public JwtFilter(ServerStatus serverStatus,
                      Constants constantsProperties) {
+        this(serverStatus, constantsProperties, Set.of());
+    }
+
+    /**
+     * @param sessionlessPaths paths, without context path, which are not counted as user activity in
+     *                         {@link ServerStatus}, so they neither take a user slot nor fail when server is busy.
+     */
+    public JwtFilter(ServerStatus serverStatus,
+                     Constants constantsProperties,
+                     Set<String> sessionlessPaths) {
         this.serverStatus = serverStatus;
-        this.constantsProperties = constantsProperties;
+        this.sessionlessPaths = sessionlessPaths;
+        this.tokenVerifier = new TokenVerifier(constantsProperties.getJWT_SECRET_KEY(),
+                constantsProperties.getJWT_CACHE_SIZE());
         this.logger = new ServerLogger(this.getClass().getName(), constantsProperties.getLOG());
     }
 
     /**
      * Checks whether {@code req} contains {@code Authorization} header and whether this header contains JWT token
-     * with required claims. It also checks if server is occupied by another user.
+     * with required claims. It also checks if there is a free engine for the user, except for sessionless paths.
+     * Verified token is stored in {@code token} request attribute. Tokens which were already verified are taken from
+     * {@link TokenVerifier} cache.
      */
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
         final HttpServletRequest request = (HttpServletRequest) req;
-        serverStatus.updateServerStatus(HttpStatus.OK.value());
 
         final String authHeader = request.getHeader("authorization");
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
 
             logger.log("error", ERROR_MISSING_OR_INVALID_HEADER);
-            serverStatus.updateServerStatus(HttpStatus.UNAUTHORIZED.value());
+            ServerMetrics.JWT_MISSING_HEADER.increment();
             throw new ResponseStatusException(
                     HttpStatus.UNAUTHORIZED, ERROR_MISSING_OR_INVALID_HEADER);
         }
 
         final String token = authHeader.substring(7); // The part after "Bearer "
 
-        if (!serverStatus.isServerAvailable(token)) {
-            serverStatus.updateServerStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
-            throw new ResponseStatusException(
-                    HttpStatus.SERVICE_UNAVAILABLE, ERROR_SERVER_IS_BUSY);
-        }
-
+        final Claims claims;
         try {
-            String jwtSecretKey = constantsProperties.getJWT_SECRET_KEY();
-            final Claims claims = Jwts.parser()
-                    .setSigningKey(jwtSecretKey)
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            serverStatus.updateUser(token);
-            request.setAttribute("claims", claims);
+            claims = tokenVerifier.verify(token);
         } catch (Exception e) {
             logger.log("error", ERROR_INVALID_TOKEN);
-            serverStatus.updateServerStatus(HttpStatus.UNAUTHORIZED.value());
+            ServerMetrics.JWT_INVALID_TOKEN.increment();
             throw new ResponseStatusException(
                     HttpStatus.UNAUTHORIZED, ERROR_INVALID_TOKEN);
         }
 
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!sessionlessPaths.contains(path) && !serverStatus.updateUser(token)) {
+            ServerMetrics.JWT_SERVER_BUSY.increment();
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, ERROR_SERVER_IS_BUSY);
+        }
+
+        request.setAttribute("claims", claims);
+        request.setAttribute(TOKEN_ATTRIBUTE, token);
+
         chain.doFilter(req, res);
     }
 }
\ No newline at end of file
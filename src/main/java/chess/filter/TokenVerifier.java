@@ -0,0 +1,99 @@
+package chess.filter;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.impl.TextCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verifies JWT tokens with a parser built once for the secret key. Verified tokens are kept in a bounded LRU cache
+ * keyed by SHA-256 hash of the token until they expire, so repeated requests of the same client skip parsing and
+ * signature verification.
+ */
+public class TokenVerifier {
+
+    private final JwtParser parser;
+
+    /**
+     * verified tokens by token hash, {@code null} if cache is disabled.
+     */
+    private final Map<String, VerifiedToken> verified;
+
+    /**
+     * @param secretKey  base64 encoded secret key, the same as passed to {@link JwtParser#setSigningKey(String)}.
+     * @param cacheSize  maximal number of cached tokens, {@code 0} disables cache.
+     */
+    public TokenVerifier(String secretKey, int cacheSize) {
+        this.parser = Jwts.parser().setSigningKey(TextCodec.BASE64.decode(secretKey));
+        this.verified = cacheSize <= 0 ? null : new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns claims of {@code token}, from cache if the token was already verified and did not expire.
+     *
+     * @param token JWT token.
+     * @return claims of the token.
+     * @throws RuntimeException if token is invalid or expired.
+     */
+    public Claims verify(String token) {
+        if (verified == null) {
+            return parser.parseClaimsJws(token).getBody();
+        }
+
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (verified) {
+            VerifiedToken cached = verified.get(key);
+            if (cached != null) {
+                if (now < cached.expiration) return cached.claims;
+                verified.remove(key);
+            }
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        VerifiedToken verifiedToken = new VerifiedToken(claims,
+                expiration == null ? Long.MAX_VALUE : expiration.getTime());
+        synchronized (verified) {
+            verified.put(key, verifiedToken);
+        }
+        return claims;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class VerifiedToken {
+
+        private final Claims claims;
+
+        /**
+         * expiration time in ms, {@link Long#MAX_VALUE} if token does not expire.
+         */
+        private final long expiration;
+
+        VerifiedToken(Claims claims, long expiration) {
+            this.claims = claims;
+            this.expiration = expiration;
+        }
+    }
+}
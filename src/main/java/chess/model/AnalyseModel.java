@@ -0,0 +1,85 @@
+package chess.model;
+
+import java.util.List;
+
+public class AnalyseModel {
+
+    private String engine;
+
+    /**
+     * position to analyse, start position if {@code null}.
+     */
+    private String fen;
+
+    /**
+     * moves played from {@link #fen} in UCI notation.
+     */
+    private List<String> moves;
+
+    private Integer depth;
+
+    private Integer movetime;
+
+    private Long nodes;
+
+    /**
+     * maximal time in ms until engine is stopped and the best result found so far is returned.
+     */
+    private Long deadline;
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getFen() {
+        return fen;
+    }
+
+    public void setFen(String fen) {
+        this.fen = fen;
+    }
+
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    public void setMoves(List<String> moves) {
+        this.moves = moves;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public Integer getMovetime() {
+        return movetime;
+    }
+
+    public void setMovetime(Integer movetime) {
+        this.movetime = movetime;
+    }
+
+    public Long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(Long nodes) {
+        this.nodes = nodes;
+    }
+
+    public Long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Long deadline) {
+        this.deadline = deadline;
+    }
+}
@@ -0,0 +1,97 @@
+package chess.model;
+
+public class AnalysisModel {
+
+    private String fen;
+
+    private String info;
+
+    private String bestmove;
+
+    private Integer depth;
+
+    /**
+     * score in centipawns, {@code null} if engine reported mate score.
+     */
+    private Integer score;
+
+    /**
+     * moves to mate, {@code null} if engine reported centipawn score.
+     */
+    private Integer mate;
+
+    private String pv;
+
+    private String error;
+
+    public AnalysisModel() {
+    }
+
+    public AnalysisModel(String fen) {
+        this.fen = fen;
+    }
+
+    public String getFen() {
+        return fen;
+    }
+
+    public void setFen(String fen) {
+        this.fen = fen;
+    }
+
+    public String getInfo() {
+        return info;
+    }
+
+    public void setInfo(String info) {
+        this.info = info;
+    }
+
+    public String getBestmove() {
+        return bestmove;
+    }
+
+    public void setBestmove(String bestmove) {
+        this.bestmove = bestmove;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+
+    public Integer getMate() {
+        return mate;
+    }
+
+    public void setMate(Integer mate) {
+        this.mate = mate;
+    }
+
+    public String getPv() {
+        return pv;
+    }
+
+    public void setPv(String pv) {
+        this.pv = pv;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
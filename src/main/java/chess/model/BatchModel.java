@@ -0,0 +1,56 @@
+package chess.model;
+
+import java.util.List;
+
+public class BatchModel {
+
+    private String engine;
+
+    private List<String> fens;
+
+    private Integer depth;
+
+    private Integer movetime;
+
+    private Integer workers;
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public List<String> getFens() {
+        return fens;
+    }
+
+    public void setFens(List<String> fens) {
+        this.fens = fens;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public Integer getMovetime() {
+        return movetime;
+    }
+
+    public void setMovetime(Integer movetime) {
+        this.movetime = movetime;
+    }
+
+    public Integer getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(Integer workers) {
+        this.workers = workers;
+    }
+}
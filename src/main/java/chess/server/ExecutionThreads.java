@@ -0,0 +1,126 @@
+package chess.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates threads and executors for engine i/o, delayed tasks and request handling. In {@link Mode#PLATFORM} mode
+ * (default) every task runs on a platform thread. In {@link Mode#VIRTUAL} mode tasks run on virtual threads, so
+ * blocked engine readers and writers do not hold OS threads. Virtual threads require JDK 21 or newer, on older JDK
+ * {@link Mode#PLATFORM} mode is used instead.
+ */
+public class ExecutionThreads {
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    /**
+     * platform threads, used where no configured instance is available.
+     */
+    public static final ExecutionThreads PLATFORM = new ExecutionThreads(Mode.PLATFORM);
+
+    private final Mode mode;
+
+    /**
+     * {@code Thread.Builder} methods, {@code null} in platform mode.
+     */
+    private final Method ofVirtual, name, unstarted, factory, newThreadPerTaskExecutor;
+
+    private final ServerLogger logger;
+
+    public ExecutionThreads(Mode mode) {
+        this(mode, true);
+    }
+
+    /**
+     * @param log {@code config.LOG}.
+     */
+    public ExecutionThreads(Mode mode, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        Method ofVirtual = null, name = null, unstarted = null, factory = null, newThreadPerTaskExecutor = null;
+        if (mode == Mode.VIRTUAL) {
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class);
+                unstarted = builder.getMethod("unstarted", Runnable.class);
+                factory = builder.getMethod("factory");
+                newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (ReflectiveOperationException e) {
+                logger.log("error", "Virtual threads are not supported by this JDK, using platform threads");
+                mode = Mode.PLATFORM;
+            }
+        }
+        this.mode = mode;
+        this.ofVirtual = ofVirtual;
+        this.name = name;
+        this.unstarted = unstarted;
+        this.factory = factory;
+        this.newThreadPerTaskExecutor = newThreadPerTaskExecutor;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+
+    /**
+     * Creates thread which is not started yet. Virtual threads are always daemon threads.
+     *
+     * @param threadName name of the thread.
+     * @param task       task run by the thread.
+     */
+    public Thread newThread(String threadName, Runnable task) {
+        if (mode == Mode.PLATFORM) {
+            return new Thread(task, threadName);
+        }
+        return (Thread) invoke(unstarted, builder(threadName), task);
+    }
+
+    /**
+     * Creates thread factory of daemon threads with the same name.
+     *
+     * @param threadName name of created threads.
+     */
+    public ThreadFactory factory(String threadName) {
+        if (mode == Mode.PLATFORM) {
+            return task -> {
+                Thread thread = newThread(threadName, task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        return (ThreadFactory) invoke(factory, builder(threadName));
+    }
+
+    /**
+     * Creates executor for short blocking tasks: cached pool of platform threads, or new virtual thread per task.
+     *
+     * @param threadName name of executor threads.
+     */
+    public ExecutorService newExecutor(String threadName) {
+        if (mode == Mode.PLATFORM) {
+            return Executors.newCachedThreadPool(factory(threadName));
+        }
+        return (ExecutorService) invoke(newThreadPerTaskExecutor, null, factory(threadName));
+    }
+
+    private Object builder(String threadName) {
+        return invoke(name, invoke(ofVirtual, null), threadName);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package chess.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in ns with log-linear buckets, like HdrHistogram with 16 sub-buckets per power of two, so
+ * every recorded value is reported with at most ~6% error. Buckets are {@link LongAdder striped counters}, so
+ * recording from many threads does not contend and reading does not block recording.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos latency in ns, negative values are ignored.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) return;
+        buckets[index(nanos)].increment();
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param quantile quantile between {@code 0} and {@code 1}.
+     * @return approximate value in ns below which {@code quantile} of recorded values lie.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(middle(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @return count, mean, percentiles and max in ms.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        long n = count.sum();
+        snapshot.put("count", n);
+        snapshot.put("meanMs", n == 0 ? 0 : sum.sum() / n / 1e6);
+        snapshot.put("p50Ms", getValueAtQuantile(0.5) / 1e6);
+        snapshot.put("p90Ms", getValueAtQuantile(0.9) / 1e6);
+        snapshot.put("p99Ms", getValueAtQuantile(0.99) / 1e6);
+        snapshot.put("p999Ms", getValueAtQuantile(0.999) / 1e6);
+        snapshot.put("maxMs", max.get() / 1e6);
+        return snapshot;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return value in the middle of bucket {@code index}.
+     */
+    static long middle(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
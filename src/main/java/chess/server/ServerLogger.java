@@ -2,10 +2,64 @@ package chess.server;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tagged logger. Records are checked against {@code config.LOG} and level of their tag, then handed over to a bounded
+ * ring buffer written by a single daemon thread, so callers never wait for the log file. Message parameters are
+ * formatted on the writer thread, disabled records cost only the level check.
+ * <p>
+ * Engine traffic (tags {@code in} and {@code out}) is logged at {@code DEBUG} unless configured otherwise. It is
+ * sampled when the buffer is more than {@link #SAMPLE_THRESHOLD} full and dropped when it is full, other records are
+ * written by the caller when the buffer is full.
+ */
 public class ServerLogger {
 
-    private boolean log;
+    /**
+     * tags of high-rate engine i/o, which may be sampled or dropped.
+     */
+    private static final Set<String> HIGH_RATE_TAGS = Set.of("in", "out");
+
+    /**
+     * fraction of buffer capacity above which only every {@link #SAMPLE_RATE}-th engine record is kept.
+     */
+    private static final double SAMPLE_THRESHOLD = 0.75;
+
+    private static final int SAMPLE_RATE = 16;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static volatile boolean enabled = true;
+
+    private static final Map<String, Level> DEFAULT_LEVELS = Map.of(
+            "error", Level.ERROR,
+            "in", Level.DEBUG,
+            "out", Level.DEBUG);
+
+    private static volatile Map<String, Level> tagLevels = DEFAULT_LEVELS;
+
+    /**
+     * records waiting for the writer thread. The queue is never replaced, so records are not lost when capacity
+     * changes, {@link #submit(Record)} keeps its size at {@link #capacity}, give or take concurrent callers.
+     */
+    private static final BlockingQueue<Record> buffer = new LinkedBlockingQueue<>();
+
+    private static volatile int capacity = DEFAULT_BUFFER_SIZE;
+
+    private static final AtomicLong sampled = new AtomicLong();
+
+    private static final LongAdder dropped = new LongAdder();
+
+    private static volatile Thread writer;
+
+    private final boolean log;
 
     private final Logger logger;
 
@@ -14,9 +68,195 @@ public class ServerLogger {
         this.log = log;
     }
 
+    /**
+     * Applies logging configuration to all loggers.
+     *
+     * @param log        {@code config.LOG}, {@code false} disables all records.
+     * @param levels     levels of tags, e.g. {@code in:INFO,out:INFO,status:OFF}. Tags which are not listed are
+     *                   logged at {@code INFO}, {@code error} at {@code ERROR}, {@code in} and {@code out} at
+     *                   {@code DEBUG}.
+     * @param bufferSize capacity of the ring buffer, records already buffered are kept when it shrinks.
+     */
+    public static synchronized void configure(boolean log, String levels, int bufferSize) {
+        Map<String, Level> parsed = new HashMap<>(DEFAULT_LEVELS);
+        for (String entry : levels.split(",")) {
+            if (entry.isBlank()) continue;
+            String[] tagLevel = entry.split(":");
+            if (tagLevel.length != 2) {
+                throw new IllegalArgumentException("Expected tag:level, got " + entry);
+            }
+            String level = tagLevel[1].trim().toUpperCase(Locale.ROOT);
+            parsed.put(tagLevel[0].trim(), level.equals("OFF") ? null : Level.valueOf(level));
+        }
+        tagLevels = Collections.unmodifiableMap(parsed);
+        enabled = log;
+        if (bufferSize > 0) {
+            capacity = bufferSize;
+        }
+    }
+
+    /**
+     * @return number of engine records dropped, because the buffer was full or they were not sampled.
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    public static int getBuffered() {
+        return buffer.size();
+    }
+
+    /**
+     * @return whether records of {@code tag} are written, callers may skip building expensive messages otherwise.
+     */
+    public boolean isEnabled(String tag) {
+        return level(tag) != null;
+    }
+
     public void log(String tag, String msg) {
-        if(log){
-            logger.info(String.format("[%s] %s", tag, msg));
+        Level level = level(tag);
+        if (level != null) {
+            submit(new Record(logger, level, tag, msg, null, null));
+        }
+    }
+
+    /**
+     * Logs message formatted by {@link String#format} on the writer thread, {@code args} must not be modified after
+     * the call.
+     */
+    public void log(String tag, String format, Object... args) {
+        Level level = level(tag);
+        if (level != null) {
+            submit(new Record(logger, level, tag, format, args, null));
+        }
+    }
+
+    /**
+     * Logs message like {@link #log(String, String, Object...)} together with stack trace of {@code thrown}.
+     */
+    public void log(String tag, Throwable thrown, String format, Object... args) {
+        Level level = level(tag);
+        if (level != null) {
+            submit(new Record(logger, level, tag, format, args, thrown));
+        }
+    }
+
+    private Level level(String tag) {
+        if (!log || !enabled) return null;
+        Level level = tagLevels.getOrDefault(tag, Level.INFO);
+        if (level == null) return null;
+        switch (level) {
+            case ERROR: return logger.isErrorEnabled() ? level : null;
+            case WARN: return logger.isWarnEnabled() ? level : null;
+            case INFO: return logger.isInfoEnabled() ? level : null;
+            case DEBUG: return logger.isDebugEnabled() ? level : null;
+            default: return logger.isTraceEnabled() ? level : null;
+        }
+    }
+
+    private static void submit(Record record) {
+        if (writer == null) startWriter();
+        int capacity = ServerLogger.capacity;
+        int size = buffer.size();
+        if (HIGH_RATE_TAGS.contains(record.tag)) {
+            if (size > capacity * SAMPLE_THRESHOLD && sampled.incrementAndGet() % SAMPLE_RATE != 0) {
+                dropped.increment();
+            } else if (size >= capacity) {
+                dropped.increment();
+            } else {
+                buffer.offer(record);
+            }
+        } else if (size >= capacity) {
+            record.write();
+        } else {
+            buffer.offer(record);
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) return;
+        writer = new Thread(ServerLogger::writeLoop, "server-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(ServerLogger::flush, "server-logger-flush"));
+    }
+
+    private static void writeLoop() {
+        long reportedDrops = 0;
+        List<Record> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Record record = buffer.poll(1, TimeUnit.SECONDS);
+                if (record != null) {
+                    batch.add(record);
+                    buffer.drainTo(batch);
+                }
+            } catch (InterruptedException ignored) {
+            }
+            for (Record record : batch) {
+                record.write();
+            }
+            batch.clear();
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                LoggerFactory.getLogger(ServerLogger.class)
+                        .warn(String.format("[log] %d engine records dropped", drops - reportedDrops));
+                reportedDrops = drops;
+            }
+        }
+    }
+
+    /**
+     * Writes buffered records on the calling thread.
+     */
+    static void flush() {
+        Record record;
+        while ((record = buffer.poll()) != null) {
+            record.write();
+        }
+    }
+
+    private static final class Record {
+
+        private final Logger logger;
+
+        private final Level level;
+
+        private final String tag;
+
+        private final String message;
+
+        private final Object[] args;
+
+        /**
+         * exception which stack trace is written after message, or {@code null}.
+         */
+        private final Throwable thrown;
+
+        Record(Logger logger, Level level, String tag, String message, Object[] args, Throwable thrown) {
+            this.logger = logger;
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+            this.args = args;
+            this.thrown = thrown;
+        }
+
+        void write() {
+            String text;
+            try {
+                text = String.format("[%s] %s", tag, args == null ? message : String.format(message, args));
+            } catch (IllegalFormatException e) {
+                text = String.format("[%s] %s %s", tag, message, Arrays.toString(args));
+            }
+            switch (level) {
+                case ERROR: logger.error(text, thrown); break;
+                case WARN: logger.warn(text, thrown); break;
+                case INFO: logger.info(text, thrown); break;
+                case DEBUG: logger.debug(text, thrown); break;
+                default: logger.trace(text, thrown);
+            }
         }
     }
 }
@@ -0,0 +1,253 @@
+package chess.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms of engine and web socket hot paths. Recording only touches {@link LongAdder striped
+ * counters}, all aggregation, including reading engine process stats from {@code /proc}, is done in
+ * {@link #snapshot()}, so scraping metrics does not slow down recording threads.
+ */
+public final class ServerMetrics {
+
+    /**
+     * {@code /proc/[pid]/stat} cpu times are in clock ticks, which are 1/100 s on Linux.
+     */
+    private static final double CLOCK_TICKS_PER_SECOND = 100;
+
+    /**
+     * time from {@code go} command until the first {@code info} line.
+     */
+    public static final LatencyHistogram COMMAND_TO_FIRST_INFO = new LatencyHistogram();
+
+    /**
+     * time from {@code go} command until {@code bestmove} line.
+     */
+    public static final LatencyHistogram COMMAND_TO_BESTMOVE = new LatencyHistogram();
+
+    /**
+     * time from starting engine process until it answers {@code uciok}.
+     */
+    public static final LatencyHistogram ENGINE_START = new LatencyHistogram();
+
+    /**
+     * time from queueing web socket message until it was sent.
+     */
+    public static final LatencyHistogram WS_SEND = new LatencyHistogram();
+
+    /**
+     * time interactive search waited for a free engine slot.
+     */
+    public static final LatencyHistogram JOB_WAIT_INTERACTIVE = new LatencyHistogram();
+
+    /**
+     * time batch search waited for a free engine slot.
+     */
+    public static final LatencyHistogram JOB_WAIT_BATCH = new LatencyHistogram();
+
+    public static final LongAdder ENGINE_LINES = new LongAdder();
+
+    public static final LongAdder WS_MESSAGES_SENT = new LongAdder();
+
+    public static final LongAdder BOOK_HITS = new LongAdder();
+
+    public static final LongAdder BOOK_MISSES = new LongAdder();
+
+    /**
+     * {@code go} answered by speculative search.
+     */
+    public static final LongAdder SPECULATION_HITS = new LongAdder();
+
+    /**
+     * {@code go} of session with speculation enabled in a position which was not searched.
+     */
+    public static final LongAdder SPECULATION_MISSES = new LongAdder();
+
+    public static final LongAdder JWT_MISSING_HEADER = new LongAdder();
+
+    public static final LongAdder JWT_INVALID_TOKEN = new LongAdder();
+
+    public static final LongAdder JWT_SERVER_BUSY = new LongAdder();
+
+    private static final Set<EngineProbe> engines = ConcurrentHashMap.newKeySet();
+
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * values of the previous snapshot, used for rates.
+     */
+    private static long lastSnapshotNanos = System.nanoTime();
+
+    private static long lastEngineLines;
+
+    private static final Map<Long, Long> lastCpuTicks = new HashMap<>();
+
+    private ServerMetrics() {
+    }
+
+    /**
+     * Registers running engine, whose nps and process stats are reported.
+     */
+    public static void register(EngineProbe engine) {
+        engines.add(engine);
+    }
+
+    public static void unregister(EngineProbe engine) {
+        engines.remove(engine);
+    }
+
+    /**
+     * Registers value read on every snapshot, e.g. queue depth.
+     */
+    public static void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @return all metrics. Rates and cpu usage are computed since the previous snapshot.
+     */
+    public static synchronized Map<String, Object> snapshot() {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1e-9, (now - lastSnapshotNanos) / 1e9);
+        lastSnapshotNanos = now;
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("commandToFirstInfo", COMMAND_TO_FIRST_INFO.snapshot());
+        metrics.put("commandToBestmove", COMMAND_TO_BESTMOVE.snapshot());
+        metrics.put("engineStart", ENGINE_START.snapshot());
+        metrics.put("wsSend", WS_SEND.snapshot());
+        metrics.put("jobWaitInteractive", JOB_WAIT_INTERACTIVE.snapshot());
+        metrics.put("jobWaitBatch", JOB_WAIT_BATCH.snapshot());
+
+        long lines = ENGINE_LINES.sum();
+        metrics.put("engineLines", lines);
+        metrics.put("engineLinesPerSecond", (lines - lastEngineLines) / elapsedSeconds);
+        lastEngineLines = lines;
+        metrics.put("wsMessagesSent", WS_MESSAGES_SENT.sum());
+
+        Map<String, Object> book = new LinkedHashMap<>();
+        long hits = BOOK_HITS.sum(), misses = BOOK_MISSES.sum();
+        book.put("hits", hits);
+        book.put("misses", misses);
+        book.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        metrics.put("book", book);
+
+        Map<String, Object> speculation = new LinkedHashMap<>();
+        long speculationHits = SPECULATION_HITS.sum(), speculationMisses = SPECULATION_MISSES.sum();
+        speculation.put("hits", speculationHits);
+        speculation.put("misses", speculationMisses);
+        speculation.put("hitRate", speculationHits + speculationMisses == 0 ? 0
+                : (double) speculationHits / (speculationHits + speculationMisses));
+        metrics.put("speculation", speculation);
+
+        Map<String, Object> jwt = new LinkedHashMap<>();
+        jwt.put("missingHeader", JWT_MISSING_HEADER.sum());
+        jwt.put("invalidToken", JWT_INVALID_TOKEN.sum());
+        jwt.put("serverBusy", JWT_SERVER_BUSY.sum());
+        metrics.put("jwtRejections", jwt);
+
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+            metrics.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+
+        List<Map<String, Object>> engineStats = new ArrayList<>();
+        Map<Long, Long> cpuTicks = new HashMap<>();
+        long totalNps = 0;
+        for (EngineProbe engine : engines) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long pid = engine.getPid();
+            stats.put("name", engine.getName());
+            stats.put("pid", pid);
+            stats.put("nps", engine.getNps());
+            totalNps += engine.getNps();
+
+            long ticks = readCpuTicks(pid);
+            if (ticks >= 0) {
+                cpuTicks.put(pid, ticks);
+                Long previous = lastCpuTicks.get(pid);
+                stats.put("cpuSeconds", ticks / CLOCK_TICKS_PER_SECOND);
+                if (previous != null) {
+                    stats.put("cpuPercent", 100 * (ticks - previous) / CLOCK_TICKS_PER_SECOND / elapsedSeconds);
+                }
+            }
+            long rss = readRssKb(pid);
+            if (rss >= 0) stats.put("rssKb", rss);
+            engineStats.add(stats);
+        }
+        lastCpuTicks.clear();
+        lastCpuTicks.putAll(cpuTicks);
+        metrics.put("engineNps", totalNps);
+        metrics.put("engines", engineStats);
+        return metrics;
+    }
+
+    /**
+     * @return user and system cpu time of process in clock ticks, or {@code -1} if it can't be read.
+     */
+    private static long readCpuTicks(long pid) {
+        String stat = readProc(pid, "stat");
+        if (stat == null) return -1;
+
+        // fields after process name, which may contain spaces: state is field 3, utime 14, stime 15
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        try {
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return resident set size of process in kB, or {@code -1} if it can't be read.
+     */
+    private static long readRssKb(long pid) {
+        String status = readProc(pid, "status");
+        if (status == null) return -1;
+
+        for (String line : status.split("\n")) {
+            if (line.startsWith("VmRSS:")) {
+                try {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String readProc(long pid, String file) {
+        if (pid < 0) return null;
+        Path path = Paths.get("/proc", Long.toString(pid), file);
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Running engine process.
+     */
+    public interface EngineProbe {
+
+        String getName();
+
+        /**
+         * @return id of engine process, {@code -1} if process is not running.
+         */
+        long getPid();
+
+        /**
+         * @return nodes per second from the last engine {@code info} line.
+         */
+        long getNps();
+    }
+}
@@ -1,26 +1,32 @@
 package chess.server;
 
 import chess.Constants;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
- * Contains information about server status i.e. last user activity time and currently logged user token.
+ * Contains information about server status i.e. logged users tokens and their last activity time. Every logged user
+ * gets a separate engine, so number of users which can be logged at the same time is limited by
+ * {@link Constants#getMAX_CONCURRENT_ENGINES()}.
  */
 @Service
 public class ServerStatus {
 
     /**
-     * currently logged user token.
+     * last activity of every logged user, by user token.
      */
-    private String currentUserToken = null;
+    private final Map<String, Long> sessions = new ConcurrentHashMap<>();
 
     /**
-     * last logged user activity.
+     * listeners which will be notified when user session is closed.
      */
-    private long lastUserActivity = 0;
-
-    private int HTTPStatus = HttpStatus.OK.value();
+    private final List<SessionListener> sessionListeners = new CopyOnWriteArrayList<>();
 
     private final Constants constantsProperties;
     private final ServerLogger logger;
@@ -31,29 +37,35 @@ public class ServerStatus {
     }
 
     /**
-     * Checks if server is available for user with token {@code token} i.e. {@link #currentUserToken} is null, or
-     * {@link #currentUserToken} equals {#code token} and {@link #lastUserActivity} was more then
-     * {@link Constants#getMAX_USER_INACTIVE()} ms ago.
+     * Checks if server is available for user with token {@code token} i.e. user is already logged, or there are less
+     * than {@link Constants#getMAX_CONCURRENT_ENGINES()} logged users. Users which were inactive for more than
+     * {@link Constants#getMAX_USER_INACTIVE()} ms are logged out when their place is needed.
      *
      * @param token token of user for which you want to check server availability
      * @return whether server is available for user, or not
      */
     public boolean isServerAvailable(String token) {
-        if (currentUserToken == null){
-            logger.log("available", "Current token is null");
-            return true;
+        List<String> closed = new ArrayList<>();
+        try {
+            return isServerAvailable(token, closed);
+        } finally {
+            notifyClosed(closed);
         }
+    }
 
-        if (token.equals(currentUserToken)) {
-            logger.log("available", "Received request with active user token");
+    /**
+     * @param closed receives tokens of sessions closed because of inactivity, listeners must be notified by caller.
+     */
+    private boolean isServerAvailable(String token, List<String> closed) {
+        if (sessions.containsKey(token)) {
             return true;
         }
 
-        long maxUserInactive = constantsProperties.getMAX_USER_INACTIVE();
+        if (sessions.size() >= constantsProperties.getMAX_CONCURRENT_ENGINES()) {
+            closeInactiveSessions(closed);
+        }
 
-        if ((System.currentTimeMillis() - lastUserActivity) > maxUserInactive) {
-            currentUserToken = null;
-            logger.log("available", "Current user was inactive");
+        if (sessions.size() < constantsProperties.getMAX_CONCURRENT_ENGINES()) {
             return true;
         }
 
@@ -61,36 +73,103 @@ public class ServerStatus {
         return false;
     }
 
-    public void updateServerStatus(int status){
-        this.HTTPStatus = status;
-    }
-
-    public int getServerStatus(){
-        return HTTPStatus;
-    }
-
     /**
-     * Should be called every time user makes some authorized action (calls route).
+     * Should be called every time user makes some authorized action (calls route). Logs user in if there is a free
+     * place. Listeners of closed sessions are notified after the lock is released, so stopping their engines
+     * doesn't block other logins.
+     *
      * @param token user token
+     * @return whether user is logged in.
      */
-    public void updateUser(String token) {
-        if (isServerAvailable(token)) {
-            this.currentUserToken = token;
-            lastUserActivity = System.currentTimeMillis();
+    public boolean updateUser(String token) {
+        if (sessions.computeIfPresent(token, (t, last) -> System.currentTimeMillis()) != null) {
+            return true;
+        }
+
+        List<String> closed = new ArrayList<>();
+        try {
+            synchronized (sessions) {
+                if (!isServerAvailable(token, closed)) {
+                    return false;
+                }
+                if (sessions.putIfAbsent(token, System.currentTimeMillis()) == null) {
+                    logger.log("available", "User logged in, %d active sessions", sessions.size());
+                }
+                return true;
+            }
+        } finally {
+            notifyClosed(closed);
         }
     }
 
     /**
      * Should be called when user logs out.
+     * @param token user token
      */
-    public String userLoggedOut() {
-        currentUserToken = null;
+    public String userLoggedOut(String token) {
+        closeSession(token);
         return "Logged out";
     }
 
-    public String getCurrentUserToken(){
-        return currentUserToken;
+    public boolean isUserLogged(String token) {
+        return sessions.containsKey(token);
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
     }
 
     public boolean getLogStatus() { return constantsProperties.getLOG(); }
+
+    /**
+     * Adds listener which will be notified every time user session is closed.
+     *
+     * @param listener listener to add.
+     */
+    public void addSessionListener(SessionListener listener) {
+        sessionListeners.add(listener);
+    }
+
+    /**
+     * Removes sessions of users which were inactive for too long.
+     *
+     * @param closed receives tokens of removed sessions, listeners are not notified.
+     */
+    private void closeInactiveSessions(List<String> closed) {
+        long maxUserInactive = constantsProperties.getMAX_USER_INACTIVE();
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, Long>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> session = it.next();
+            if (now - session.getValue() > maxUserInactive && sessions.remove(session.getKey(), session.getValue())) {
+                logger.log("available", "User was inactive");
+                closed.add(session.getKey());
+            }
+        }
+    }
+
+    private void closeSession(String token) {
+        if (sessions.remove(token) == null) return;
+
+        notifyClosed(List.of(token));
+    }
+
+    private void notifyClosed(List<String> tokens) {
+        for (String token : tokens) {
+            for (SessionListener listener : sessionListeners) {
+                listener.onSessionClosed(token);
+            }
+        }
+    }
+
+    public interface SessionListener {
+
+        /**
+         * Will be called every time user logs out or is logged out because of inactivity.
+         *
+         * @param token token of the user.
+         */
+        void onSessionClosed(String token);
+    }
 }
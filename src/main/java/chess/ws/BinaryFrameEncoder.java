@@ -0,0 +1,162 @@
+package chess.ws;
+
+import chess.engine.UciBestMove;
+import chess.engine.UciInfo;
+import chess.engine.UciListener;
+import chess.engine.UciParser;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes engine analysis lines of a single client as binary frames of {@value #PROTOCOL} subprotocol. All other
+ * lines stay text frames.
+ * <p>
+ * {@code info} frame: byte {@code 1}, varint flags (bit 0 - cp score, bit 1 - mate score, bit 2 - lowerbound, bit 3
+ * - upperbound), varints depth + 1, seldepth + 1, multipv, zigzag score, nodes + 1, nps + 1, time + 1, then varint
+ * number of moves shared with previous principal variation of the same multipv, varint number of new moves and
+ * new moves as 16 bit little endian {@link chess.board.Move} codes.
+ * <p>
+ * {@code bestmove} frame: byte {@code 2}, best move and ponder move (or {@code 0xffff}) as 16 bit little endian codes.
+ * <p>
+ * Encoder keeps state, so frames must be encoded in the order they are delivered. Principal variation of an encoded
+ * frame becomes the base of the next delta only after {@link #sent()}, so a frame which failed to send and is
+ * encoded again, or is never sent, does not leave client with a different base than the server.
+ */
+class BinaryFrameEncoder implements UciListener {
+
+    static final String PROTOCOL = "uci-bin.v1";
+
+    static final int FRAME_INFO = 1;
+    static final int FRAME_BESTMOVE = 2;
+
+    private final UciParser parser = new UciParser();
+
+    /**
+     * previous principal variation of every multipv slot.
+     */
+    private final Map<Integer, int[]> previousPv = new HashMap<>();
+
+    /**
+     * multipv slot and principal variation of the last encoded {@code info} frame, applied to {@link #previousPv} by
+     * {@link #sent()}.
+     */
+    private int pendingMultipv;
+
+    private int[] pendingPv;
+
+    /**
+     * whether the last encoded frame was {@code bestmove}, which clears {@link #previousPv} when sent.
+     */
+    private boolean pendingClear;
+
+    private byte[] buffer = new byte[256];
+
+    private int length;
+
+    /**
+     * whether the last parsed line was encoded.
+     */
+    private boolean encoded;
+
+    BinaryFrameEncoder() {
+        parser.addListener(this);
+    }
+
+    /**
+     * @return binary frame if {@code message} contains analysis, otherwise {@code message} itself.
+     */
+    synchronized WebSocketMessage<?> encode(TextMessage message) {
+        length = 0;
+        encoded = false;
+        pendingPv = null;
+        pendingClear = false;
+        parser.parse(message.getPayload());
+        return encoded ? new BinaryMessage(Arrays.copyOf(buffer, length)) : message;
+    }
+
+    /**
+     * Notes that the message returned by the last {@link #encode} call was sent to client.
+     */
+    synchronized void sent() {
+        if (pendingClear) {
+            previousPv.clear();
+        } else if (pendingPv != null) {
+            previousPv.put(pendingMultipv, pendingPv);
+        }
+        pendingPv = null;
+        pendingClear = false;
+    }
+
+    @Override
+    public void onInfo(UciInfo info) {
+        if (info.getScoreType() == UciInfo.ScoreType.NONE && !info.hasPv()) return;
+
+        int flags = 0;
+        if (info.getScoreType() == UciInfo.ScoreType.CP) flags |= 1;
+        if (info.getScoreType() == UciInfo.ScoreType.MATE) flags |= 2;
+        if (info.getBound() == UciInfo.Bound.LOWER) flags |= 4;
+        if (info.getBound() == UciInfo.Bound.UPPER) flags |= 8;
+
+        writeByte(FRAME_INFO);
+        writeVarint(flags);
+        writeVarint(info.getDepth() + 1);
+        writeVarint(info.getSeldepth() + 1);
+        writeVarint(info.getMultipv());
+        writeVarint((info.getScore() << 1) ^ (info.getScore() >> 31));
+        writeVarint(info.getNodes() + 1);
+        writeVarint(info.getNps() + 1);
+        writeVarint(info.getTime() + 1);
+
+        int[] previous = previousPv.getOrDefault(info.getMultipv(), new int[0]);
+        int shared = 0;
+        while (shared < previous.length && shared < info.getPvLength()
+                && previous[shared] == info.getPvMove(shared)) {
+            shared++;
+        }
+        writeVarint(shared);
+        writeVarint(info.getPvLength() - shared);
+
+        int[] pv = new int[info.getPvLength()];
+        for (int i = 0; i < pv.length; i++) {
+            pv[i] = info.getPvMove(i);
+            if (i >= shared) writeShort(pv[i]);
+        }
+        pendingMultipv = info.getMultipv();
+        pendingPv = pv;
+        encoded = true;
+    }
+
+    @Override
+    public void onBestMove(UciBestMove bestMove) {
+        writeByte(FRAME_BESTMOVE);
+        writeShort(bestMove.getMove());
+        writeShort(bestMove.getPonder() < 0 ? 0xffff : bestMove.getPonder());
+        pendingClear = true;
+        encoded = true;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeShort(int value) {
+        writeByte(value & 0xff);
+        writeByte(value >>> 8 & 0xff);
+    }
+
+    private void writeByte(int value) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte) value;
+    }
+}
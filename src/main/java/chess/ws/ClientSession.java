@@ -0,0 +1,124 @@
+package chess.ws;
+
+import chess.engine.EngineBroadcaster;
+import chess.server.ServerLogger;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Web socket connection of a single user. It survives reconnects, so engine output produced while user was
+ * disconnected is sent after reconnecting.
+ */
+class ClientSession implements EngineBroadcaster.Subscriber {
+
+    /**
+     * Current session
+     */
+    private volatile WebSocketSession webSocketSession;
+
+    private final OutboundQueue messagesToSend;
+
+    private final InfoCoalescer coalescer;
+
+    private final ServerLogger logger;
+
+    ClientSession(ScheduledExecutorService scheduler, Executor sender, int queueCapacity, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.messagesToSend = new OutboundQueue(queueCapacity, sender);
+        this.coalescer = new InfoCoalescer(this::sendMessage, scheduler);
+    }
+
+    /**
+     * Makes {@code session} current session of the user. Previous session will be closed immediately. If session
+     * negotiated {@value BinaryFrameEncoder#PROTOCOL} subprotocol, then analysis is sent as binary frames.
+     *
+     * @param session client session
+     * @param coalesceInterval time in ms between two sends of coalesced {@code info} lines, non-positive value sends
+     *                         every line immediately.
+     * @throws IOException
+     */
+    synchronized void attach(WebSocketSession session, long coalesceInterval) throws IOException {
+        coalescer.setInterval(coalesceInterval);
+        if (webSocketSession != null && !session.equals(webSocketSession)) {
+            webSocketSession.close();
+        }
+        this.webSocketSession = session;
+        boolean binary = BinaryFrameEncoder.PROTOCOL.equals(session.getAcceptedProtocol());
+        messagesToSend.setSession(session, binary ? new BinaryFrameEncoder() : null);
+    }
+
+    /**
+     * Keeps messages for the next session if {@code session} is current session of the user.
+     *
+     * @param session closed session
+     */
+    synchronized void detach(WebSocketSession session) {
+        if (!isCurrent(session)) return;
+
+        messagesToSend.setSession(null, null);
+    }
+
+    boolean isCurrent(WebSocketSession session) {
+        WebSocketSession current = webSocketSession;
+        return current != null && session.getId().equals(current.getId());
+    }
+
+    /**
+     * Closes current session of the user.
+     */
+    synchronized void close() {
+        messagesToSend.clear();
+        try {
+            if (webSocketSession != null && webSocketSession.isOpen()) {
+                webSocketSession.close();
+            }
+        } catch (IOException e) {
+            logger.log("error", e, "Failed to close web socket session %s", webSocketSession.getId());
+        }
+    }
+
+    /**
+     * @return number of messages waiting to be sent.
+     */
+    int getQueueDepth() {
+        return messagesToSend.getDepth();
+    }
+
+    /**
+     * @return number of {@code info} lines dropped because client did not keep up.
+     */
+    long getDroppedMessages() {
+        return messagesToSend.getDropped();
+    }
+
+    /**
+     * This method queues message for sending to client. Engine {@code info} lines may be dropped if client does not
+     * keep up, all other lines are always delivered. If {@code message} is null it will be replaced with an empty
+     * string.
+     *
+     * @param message message to send
+     */
+    private void sendMessage(String message) {
+        if (message == null || message.equals("")) {
+            message = " ";
+        }
+        boolean droppable = message.startsWith("info") && !message.startsWith("info string");
+        messagesToSend.offer(new TextMessage(message), droppable);
+    }
+
+    /**
+     * This method is called by {@link EngineBroadcaster} every time chess engine of the user outputs new line.
+     * Received line will be send to client via {@link #sendMessage(String)}, immediately or coalesced with other
+     * {@code info} lines.
+     *
+     * @param output engine output line.
+     */
+    @Override
+    public void onEngineOutput(String output) {
+        coalescer.offer(output);
+    }
+}
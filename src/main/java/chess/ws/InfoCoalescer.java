@@ -0,0 +1,112 @@
+package chess.ws;
+
+import chess.engine.UciBestMove;
+import chess.engine.UciInfo;
+import chess.engine.UciListener;
+import chess.engine.UciParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reduces number of engine {@code info} lines sent to a single client. Only the latest line of every depth/multipv
+ * slot is kept, and kept lines are sent at most once per {@link #interval} ms. Any other line, e.g.
+ * {@code bestmove}, sends kept lines and itself immediately.
+ */
+class InfoCoalescer implements UciListener {
+
+    /**
+     * slot of info lines without principal variation, e.g. {@code currmove} updates.
+     */
+    private static final long STATUS_SLOT = -1;
+
+    private final UciParser parser = new UciParser();
+
+    private final Consumer<String> sink;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * the latest line of every slot, in order of arrival.
+     */
+    private final Map<Long, String> pending = new LinkedHashMap<>();
+
+    /**
+     * time in ms between two flushes, non-positive value disables coalescing.
+     */
+    private volatile long interval;
+
+    private boolean flushScheduled = false;
+
+    InfoCoalescer(Consumer<String> sink, ScheduledExecutorService scheduler) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.parser.addListener(this);
+    }
+
+    void setInterval(long interval) {
+        this.interval = interval;
+        if (interval <= 0) flush();
+    }
+
+    /**
+     * Sends {@code line} to sink, immediately or with the next flush.
+     *
+     * @param line engine output line.
+     */
+    void offer(String line) {
+        if (interval <= 0) {
+            sink.accept(line);
+            return;
+        }
+        synchronized (this) {
+            parser.parse(line);
+        }
+    }
+
+    @Override
+    public void onInfo(UciInfo info) {
+        if (info.getString() != null) {
+            onOther(info.getLine());
+            return;
+        }
+
+        long slot = info.hasPv() ? (long) info.getDepth() << 32 | info.getMultipv() : STATUS_SLOT;
+        pending.remove(slot);
+        pending.put(slot, info.getLine());
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::scheduledFlush, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void onBestMove(UciBestMove bestMove) {
+        onOther(bestMove.getLine());
+    }
+
+    @Override
+    public void onOther(String line) {
+        flush();
+        sink.accept(line);
+    }
+
+    /**
+     * Sends all kept lines.
+     */
+    synchronized void flush() {
+        for (String line : pending.values()) {
+            sink.accept(line);
+        }
+        pending.clear();
+    }
+
+    private synchronized void scheduledFlush() {
+        flushScheduled = false;
+        flush();
+    }
+}
@@ -0,0 +1,172 @@
+package chess.ws;
+
+import chess.server.ServerMetrics;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of messages waiting to be sent to a single client. Messages are sent by at most one thread at a time,
+ * so engine reader never waits for slow client. When the queue is full, the oldest droppable message (e.g. engine
+ * {@code info} line) is removed. Messages which are not droppable (e.g. {@code bestmove}) are always delivered, even
+ * if queue has to exceed its capacity.
+ */
+class OutboundQueue {
+
+    private final int capacity;
+
+    private final Executor executor;
+
+    private final Deque<Entry> messages = new ArrayDeque<>();
+
+    /**
+     * whether some thread is sending messages at the moment.
+     */
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile WebSocketSession session;
+
+    /**
+     * encodes messages of session which negotiated binary subprotocol, {@code null} for text sessions.
+     */
+    private volatile BinaryFrameEncoder encoder;
+
+    OutboundQueue(int capacity, Executor executor) {
+        this.capacity = capacity;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets session to which messages are sent, and starts sending messages queued while there was no open session.
+     * Messages are encoded right before sending and encoder state is updated only after message was sent, so it
+     * matches messages received by client.
+     *
+     * @param session client session, {@code null} if client is disconnected.
+     * @param encoder encoder of binary frames, {@code null} if session uses text frames.
+     */
+    void setSession(WebSocketSession session, BinaryFrameEncoder encoder) {
+        this.encoder = encoder;
+        this.session = session;
+        scheduleSend();
+    }
+
+    /**
+     * Adds message to the queue and starts sending if client is connected.
+     *
+     * @param message   message to send.
+     * @param droppable whether message can be removed when queue is full.
+     */
+    void offer(TextMessage message, boolean droppable) {
+        synchronized (messages) {
+            if (messages.size() >= capacity && !dropOldest()) {
+                if (droppable) {
+                    dropped.increment();
+                    return;
+                }
+            }
+            messages.add(new Entry(message, droppable));
+        }
+        scheduleSend();
+    }
+
+    int getDepth() {
+        synchronized (messages) {
+            return messages.size();
+        }
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    void clear() {
+        synchronized (messages) {
+            messages.clear();
+        }
+    }
+
+    /**
+     * @return whether any droppable message was removed.
+     */
+    private boolean dropOldest() {
+        Iterator<Entry> it = messages.iterator();
+        while (it.hasNext()) {
+            if (it.next().droppable) {
+                it.remove();
+                dropped.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleSend() {
+        WebSocketSession session = this.session;
+        if (session == null || !session.isOpen()) return;
+
+        if (sending.compareAndSet(false, true)) {
+            executor.execute(this::send);
+        }
+    }
+
+    /**
+     * Sends queued messages until the queue is empty or session is closed.
+     */
+    private void send() {
+        try {
+            WebSocketSession session;
+            Entry entry;
+            while ((session = this.session) != null && session.isOpen() && (entry = poll()) != null) {
+                try {
+                    BinaryFrameEncoder encoder = this.encoder;
+                    WebSocketMessage<?> message = encoder == null ? entry.message : encoder.encode(entry.message);
+                    session.sendMessage(message);
+                    if (encoder != null) encoder.sent();
+                    ServerMetrics.WS_MESSAGES_SENT.increment();
+                    ServerMetrics.WS_SEND.record(System.nanoTime() - entry.queuedAt);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (messages) {
+                        messages.addFirst(entry);
+                    }
+                    return;
+                }
+            }
+        } finally {
+            sending.set(false);
+        }
+
+        if (getDepth() > 0) {
+            scheduleSend();
+        }
+    }
+
+    private Entry poll() {
+        synchronized (messages) {
+            return messages.poll();
+        }
+    }
+
+    private static class Entry {
+
+        private final TextMessage message;
+
+        private final boolean droppable;
+
+        private final long queuedAt = System.nanoTime();
+
+        Entry(TextMessage message, boolean droppable) {
+            this.message = message;
+            this.droppable = droppable;
+        }
+    }
+}
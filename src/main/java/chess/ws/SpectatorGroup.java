@@ -0,0 +1,121 @@
+package chess.ws;
+
+import chess.engine.EngineBroadcaster;
+import chess.server.ServerLogger;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Read-only web socket sessions watching analysis of a single user. Every engine line is converted to one
+ * {@link TextMessage} shared by all spectators. Every spectator has its own {@link OutboundQueue}, and spectator whose
+ * queue is full is disconnected, so slow spectators never stall the engine or other spectators.
+ */
+class SpectatorGroup implements EngineBroadcaster.Subscriber {
+
+    private final Executor sender;
+
+    private final int queueCapacity;
+
+    /**
+     * spectators by web socket session id.
+     */
+    private final Map<String, Spectator> spectators = new ConcurrentHashMap<>();
+
+    private final ServerLogger logger;
+
+    SpectatorGroup(Executor sender, int queueCapacity, boolean log) {
+        this.logger = new ServerLogger(this.getClass().getName(), log);
+        this.sender = sender;
+        this.queueCapacity = queueCapacity;
+    }
+
+    void add(WebSocketSession session) {
+        Spectator spectator = new Spectator(session, new OutboundQueue(queueCapacity, sender));
+        spectators.put(session.getId(), spectator);
+        boolean binary = BinaryFrameEncoder.PROTOCOL.equals(session.getAcceptedProtocol());
+        spectator.queue.setSession(session, binary ? new BinaryFrameEncoder() : null);
+    }
+
+    /**
+     * @return whether group has no spectators left.
+     */
+    boolean remove(WebSocketSession session) {
+        Spectator spectator = spectators.remove(session.getId());
+        if (spectator != null) {
+            spectator.queue.clear();
+        }
+        return spectators.isEmpty();
+    }
+
+    int size() {
+        return spectators.size();
+    }
+
+    long getDroppedMessages() {
+        return spectators.values().stream().mapToLong(spectator -> spectator.queue.getDropped()).sum();
+    }
+
+    /**
+     * Sends engine line to all spectators. Spectators which did not keep up are disconnected.
+     *
+     * @param output engine output line.
+     */
+    @Override
+    public void onEngineOutput(String output) {
+        if (spectators.isEmpty()) return;
+
+        TextMessage message = new TextMessage(output.isEmpty() ? " " : output);
+        boolean droppable = output.startsWith("info") && !output.startsWith("info string");
+        for (Spectator spectator : spectators.values()) {
+            if (spectator.queue.getDepth() >= queueCapacity) {
+                disconnect(spectator, CloseStatus.SESSION_NOT_RELIABLE);
+            } else {
+                spectator.queue.offer(message, droppable);
+            }
+        }
+    }
+
+    /**
+     * Disconnects all spectators when the analysis is over.
+     */
+    @Override
+    public void onClosed() {
+        for (Spectator spectator : spectators.values()) {
+            disconnect(spectator, CloseStatus.NORMAL);
+        }
+    }
+
+    /**
+     * Closes spectator session on sender thread, so engine reader never waits for closing handshake.
+     */
+    private void disconnect(Spectator spectator, CloseStatus status) {
+        if (!spectators.remove(spectator.session.getId(), spectator)) return;
+
+        spectator.queue.clear();
+        sender.execute(() -> {
+            try {
+                spectator.session.close(status);
+            } catch (IOException e) {
+                logger.log("error", e, "Failed to close spectator session %s", spectator.session.getId());
+            }
+        });
+    }
+
+    private static class Spectator {
+
+        private final WebSocketSession session;
+
+        private final OutboundQueue queue;
+
+        Spectator(WebSocketSession session, OutboundQueue queue) {
+            this.session = session;
+            this.queue = queue;
+        }
+    }
+}
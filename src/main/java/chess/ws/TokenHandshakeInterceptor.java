@@ -0,0 +1,35 @@
+package chess.ws;
+
+import chess.filter.JwtFilter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Copies user token verified by {@link JwtFilter} to web socket session attributes, so messages from the session can
+ * be routed to engine of the user.
+ */
+public class TokenHandshakeInterceptor implements HandshakeInterceptor {
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (!(request instanceof ServletServerHttpRequest)) return false;
+
+        Object token = ((ServletServerHttpRequest) request).getServletRequest()
+                .getAttribute(JwtFilter.TOKEN_ATTRIBUTE);
+        if (token == null) return false;
+
+        attributes.put(JwtFilter.TOKEN_ATTRIBUTE, token);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -1,10 +1,14 @@
 package chess.ws;
 
+import chess.server.ServerMetrics;
+import chess.server.ServerStatus;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 /**
  * This class contains configuration for web socket handler.
@@ -13,14 +17,34 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    @Autowired
+    private ServerStatus serverStatus;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(webSocketTestController(), "/ws_engine");
+        registry.addHandler(webSocketTestController(), "/ws_engine")
+                .setHandshakeHandler(handshakeHandler())
+                .addInterceptors(new TokenHandshakeInterceptor());
+    }
+
+    /**
+     * Accepts binary analysis subprotocol for clients which ask for it. Other clients use plain text.
+     */
+    @Bean
+    public DefaultHandshakeHandler handshakeHandler() {
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(BinaryFrameEncoder.PROTOCOL);
+        return handshakeHandler;
     }
 
     @Bean
     public WebSocketHandler webSocketTestController() {
-        return new WebSocketHandler();
+        WebSocketHandler handler = new WebSocketHandler();
+        serverStatus.addSessionListener(handler);
+        ServerMetrics.registerGauge("wsQueueDepth", handler::getQueueDepth);
+        ServerMetrics.registerGauge("wsDroppedMessages", handler::getDroppedMessages);
+        ServerMetrics.registerGauge("wsSpectators", handler::getSpectatorCount);
+        return handler;
     }
 
 }
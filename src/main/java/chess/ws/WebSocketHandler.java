@@ -1,39 +1,72 @@
 package chess.ws;
 
 
+import chess.Constants;
+import chess.engine.EngineBroadcaster;
 import chess.engine.EngineHandler;
+import chess.filter.JwtFilter;
+import chess.server.ExecutionThreads;
+import chess.server.ServerStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.Queue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 /**
- * Handles communication with client via web socket.
+ * Handles communication with clients via web socket. Every user has a single {@link ClientSession} connected to
+ * output of the user engine. Other users can watch the analysis read-only by connecting with {@code spectate} query
+ * parameter set to the analysis id.
  */
-public class WebSocketHandler extends TextWebSocketHandler implements Observer {
+public class WebSocketHandler extends TextWebSocketHandler implements ServerStatus.SessionListener {
+
+    private static final String SPECTATE_ATTRIBUTE = "spectate";
 
     @Autowired
     private EngineHandler engineHandler;
 
+    @Autowired
+    private ServerStatus serverStatus;
+
+    @Autowired
+    private Constants constantsProperties;
+
+    @Autowired
+    private ExecutionThreads threads;
+
     /**
-     * Current session
+     * sends coalesced engine output of all clients.
      */
-    private WebSocketSession webSocketSession;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(), daemon("ws-flush"));
 
-    private CloseEngineDelayedThread closeEngine;
+    /**
+     * sends queued messages, at most one thread per client.
+     */
+    private ExecutorService sender;
 
-    private Queue<String> messagesToSend = new LinkedList<>();
+    /**
+     * client sessions by user token.
+     */
+    private final Map<String, ClientSession> clients = new ConcurrentHashMap<>();
+
+    /**
+     * spectators by analysis id.
+     */
+    private final Map<String, SpectatorGroup> spectatorGroups = new ConcurrentHashMap<>();
 
     /**
-     * This method is called every time client sends message to server. If the message was sent by currently logged user
-     * then it will be passed to engine handler.
+     * This method is called every time client sends message to server. If the message was sent by current session of
+     * the user then it will be passed to engine handler.
      *
      * @param session client session
      * @param message message sent from client
@@ -41,40 +74,63 @@ public class WebSocketHandler extends TextWebSocketHandler implements Observer {
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        if (session.getId().equals(webSocketSession.getId())) {
-            synchronized (webSocketSession) {
-                engineHandler.processRawCommand(message.getPayload());
-            }
+        if (getAnalysisId(session) != null) return;
+
+        String token = getToken(session);
+        ClientSession client = clients.get(token);
+        if (client != null && client.isCurrent(session)) {
+            serverStatus.updateUser(token);
+            engineHandler.processRawCommand(token, message.getPayload());
         }
     }
 
     /**
-     * This method is called after connection with client was established. If this handler has another session open it
-     * will be closed immediately.
+     * This method is called after connection with client was established. If the user has another session open it
+     * will be closed immediately. Client can set interval of {@code info} lines coalescing in ms with
+     * {@code coalesce} query parameter. Session with {@code spectate} query parameter joins spectators of the analysis
+     * instead.
      *
      * @param session client session
      * @throws Exception
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        if (webSocketSession != null && !session.equals(webSocketSession)) {
-            webSocketSession.close();
-        }
-        engineHandler.observable.addObserver(this);
-        this.webSocketSession = session;
-        if (closeEngine != null) {
-            closeEngine.interrupt();
+        String analysisId = getQueryParameter(session, "spectate");
+        if (analysisId != null) {
+            spectate(session, analysisId);
+            return;
         }
-        if (messagesToSend.size() > 0) {
-            String message;
-            while ((message = messagesToSend.poll()) != null) {
-                sendMessage(message);
+
+        String token = getToken(session);
+        ClientSession client = clients.computeIfAbsent(token, t -> {
+            ClientSession created = new ClientSession(scheduler, getSender(),
+                    constantsProperties.getWS_QUEUE_CAPACITY(), constantsProperties.getLOG());
+            engineHandler.getBroadcaster(t).subscribe(created);
+            return created;
+        });
+
+        client.attach(session, getCoalesceInterval(session));
+    }
+
+    /**
+     * @return interval from {@code coalesce} query parameter, or the configured one if parameter is missing or is not
+     * a number. Negative interval is treated as {@code 0}.
+     */
+    private long getCoalesceInterval(WebSocketSession session) {
+        long interval = constantsProperties.getWS_COALESCE_INTERVAL();
+        String coalesce = getQueryParameter(session, "coalesce");
+        if (coalesce != null) {
+            try {
+                interval = Long.parseLong(coalesce.trim());
+            } catch (NumberFormatException ignored) {
             }
         }
+        return Math.max(0, interval);
     }
 
     /**
-     * Closes active engine when connection is lost
+     * Removes closed session from spectators, or detaches it from its user, whose engine output is kept until the user
+     * reconnects.
      *
      * @param session
      * @param status
@@ -83,68 +139,110 @@ public class WebSocketHandler extends TextWebSocketHandler implements Observer {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         super.afterConnectionClosed(session, status);
-        if (closeEngine != null) {
-            closeEngine.interrupt();
+        String analysisId = getAnalysisId(session);
+        if (analysisId != null) {
+            spectatorGroups.computeIfPresent(analysisId, (id, group) -> {
+                if (!group.remove(session)) return group;
+                EngineBroadcaster broadcaster = engineHandler.findBroadcaster(id);
+                if (broadcaster != null) {
+                    broadcaster.unsubscribe(group);
+                }
+                return null;
+            });
+            return;
+        }
+
+        ClientSession client = clients.get(getToken(session));
+        if (client != null) {
+            client.detach(session);
         }
-        closeEngine = new CloseEngineDelayedThread();
-        closeEngine.start();
     }
 
     /**
-     * This method sends message to client if {@link #webSocketSession} is not null. If {@code message} is null it will
-     * be replaced with an empty string.
+     * Closes web socket of the user which session was closed.
      *
-     * @param message message to send
+     * @param token token of the user.
      */
-    private void sendMessage(String message) {
-        if (message == null || message.equals("")) {
-            message = " ";
+    @Override
+    public void onSessionClosed(String token) {
+        ClientSession client = clients.remove(token);
+        if (client != null) {
+            client.close();
         }
-        if (webSocketSession == null) {
-            System.err.print("No session to handle message: " + message);
+    }
+
+    /**
+     * Adds session to spectators of the analysis, or closes it if there is no such analysis.
+     */
+    private void spectate(WebSocketSession session, String analysisId) throws IOException {
+        EngineBroadcaster broadcaster = engineHandler.findBroadcaster(analysisId);
+        if (broadcaster == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("Unknown analysis"));
             return;
         }
 
-        try {
-            if (webSocketSession.isOpen()) {
-                webSocketSession.sendMessage(new TextMessage(message));
-            } else {
-                messagesToSend.add(message);
+        session.getAttributes().put(SPECTATE_ATTRIBUTE, analysisId);
+        spectatorGroups.compute(analysisId, (id, group) -> {
+            if (group == null) {
+                group = new SpectatorGroup(getSender(), constantsProperties.getWS_QUEUE_CAPACITY(),
+                        constantsProperties.getLOG());
+                broadcaster.subscribe(group);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+            group.add(session);
+            return group;
+        });
     }
 
     /**
-     * This method is called by {@link chess.engine.EngineHandler.EngineObservable EngineObservable} every time
-     * chess engine outputs new line. Received line will be send to client via {@link #sendMessage(String)}.
-     *
-     * @param o   the observable object.
-     * @param arg argument passed to {@link Observable#notifyObservers(Object)} method.
+     * @return number of spectators of all analyses.
      */
-    @Override
-    public void update(Observable o, Object arg) {
-        if (o instanceof EngineHandler.EngineObservable && arg instanceof String) {
-            String message = (String) arg;
-            sendMessage(message);
+    public int getSpectatorCount() {
+        return spectatorGroups.values().stream().mapToInt(SpectatorGroup::size).sum();
+    }
+
+    /**
+     * @return number of messages waiting to be sent to all clients.
+     */
+    public int getQueueDepth() {
+        return clients.values().stream().mapToInt(ClientSession::getQueueDepth).sum();
+    }
+
+    /**
+     * @return number of {@code info} lines dropped because clients did not keep up.
+     */
+    public long getDroppedMessages() {
+        return clients.values().stream().mapToLong(ClientSession::getDroppedMessages).sum()
+                + spectatorGroups.values().stream().mapToLong(SpectatorGroup::getDroppedMessages).sum();
+    }
+
+    /**
+     * Creates sender executor on first use, when {@link #threads} is already injected.
+     */
+    private synchronized ExecutorService getSender() {
+        if (sender == null) {
+            sender = threads.newExecutor("ws-send");
         }
+        return sender;
     }
 
-    private class CloseEngineDelayedThread extends Thread {
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
-        static final long DELAY = 5 * 60 * 1000;
+    private static String getToken(WebSocketSession session) {
+        return (String) session.getAttributes().get(JwtFilter.TOKEN_ATTRIBUTE);
+    }
 
-        @Override
-        public void run() {
-            try {
-                Thread.sleep(DELAY);
-            } catch (InterruptedException e) {
-                return;
-            }
+    private static String getAnalysisId(WebSocketSession session) {
+        return (String) session.getAttributes().get(SPECTATE_ATTRIBUTE);
+    }
 
-            //engineHandler.stopEngine();
-        }
+    private static String getQueryParameter(WebSocketSession session, String name) {
+        if (session.getUri() == null) return null;
+        return UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(name);
     }
 }
-
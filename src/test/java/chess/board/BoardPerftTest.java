@@ -0,0 +1,105 @@
+package chess.board;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies move generation against known perft results, see https://www.chessprogramming.org/Perft_Results.
+ */
+class BoardPerftTest {
+
+	private static void assertPerft(String fen, long... nodes) {
+		Board board = Board.fromFen(fen);
+		for (int depth = 1; depth <= nodes.length; depth++) {
+			assertEquals(nodes[depth - 1], board.perft(depth), fen + " depth " + depth);
+		}
+		assertEquals(fen, board.toFen());
+		assertEquals(board.computeHash(), board.getHash());
+	}
+
+	@Test
+	void startPosition() {
+		assertPerft(Board.START_FEN, 20, 400, 8902, 197281, 4865609);
+	}
+
+	@Test
+	void kiwipete() {
+		assertPerft("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 48, 2039, 97862, 4085603);
+	}
+
+	@Test
+	void enPassantPins() {
+		assertPerft("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14, 191, 2812, 43238, 674624);
+	}
+
+	@Test
+	void promotionsAndCastling() {
+		assertPerft("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 6, 264, 9467, 422333);
+	}
+
+	@Test
+	void promotionWithCheck() {
+		assertPerft("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 44, 1486, 62379, 2103487);
+	}
+
+	@Test
+	void middlegame() {
+		assertPerft("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+				46, 2079, 89890, 3894594);
+	}
+
+	@Test
+	void incrementalHash() {
+		Board board = Board.fromPosition("position startpos moves e2e4 d7d5 e4d5 e7e5 d5e6 f8c5 e6f7 e8e7 f7g8q "
+				+ "h8g8 g1f3 b8c6 f1c4 c8g4 e1g1");
+		assertEquals(board.computeHash(), board.getHash());
+		assertEquals(Board.fromFen(board.toFen()).getHash(), board.getHash());
+		while (board.getPly() > 0) {
+			board.unmakeMove();
+			assertEquals(board.computeHash(), board.getHash());
+		}
+		assertEquals(Board.START_FEN, board.toFen());
+	}
+
+	@Test
+	void positionKey() {
+		Board moves = Board.fromPosition("position startpos moves e2e4 e7e5 g1f3");
+		Board fen = Board.fromPosition("position fen rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2 "
+				+ "moves g1f3");
+		assertEquals(moves.positionKey(), fen.positionKey());
+		assertEquals(moves.getHash(), fen.getHash());
+
+		Board repeated = Board.fromPosition("position startpos moves e2e4 e7e5 g1f3 b8c6 f3g1 c6b8 g1f3 b8c6");
+		Board direct = Board.fromPosition("position startpos moves e2e4 e7e5 g1f3 b8c6");
+		assertEquals(direct.getHash(), repeated.getHash());
+		assertNotEquals(direct.positionKey(), repeated.positionKey());
+	}
+
+	@Test
+	void rejectsInvalidInput() {
+		assertThrows(IllegalArgumentException.class, () -> Board.fromPosition("position startpos moves e2e5"));
+		assertThrows(IllegalArgumentException.class, () -> Board.fromPosition("position startpos moves e1e2"));
+		assertThrows(IllegalArgumentException.class, () -> Board.fromPosition("position fen 8/8/8/8/8/8/8/8 w - -"));
+		assertThrows(IllegalArgumentException.class,
+				() -> Board.fromPosition("position fen rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1"));
+		assertThrows(IllegalArgumentException.class, () -> Board.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1 extra"));
+		assertThrows(IllegalArgumentException.class, () -> Board.fromFen("4k3/8/8/8/8/8/8/4R1K1 w - -"));
+		assertEquals(Move.NONE, Board.startpos().parseMove("e7e8x"));
+	}
+
+	@Test
+	void legalMoveAddsFlagsToParsedMove() {
+		Board board = Board.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+		int castling = Move.parseUci("e1g1");
+		assertEquals(Move.of(4, 6, 0), castling);
+		assertTrue(board.play(castling));
+		assertEquals("r3k2r/8/8/8/8/8/8/R4RK1 b kq - 1 1", board.toFen());
+
+		assertEquals(Move.NONE, Move.parseUci("0000"));
+		assertEquals(-1, Move.parseUci("e2e4x"));
+		assertEquals("e7e8q", Move.toUci(Move.parseUci("e7e8Q")));
+		assertEquals("0000", Move.toUci(Move.NONE));
+		assertFalse(board.play(Move.parseUci("e8e6")));
+	}
+}
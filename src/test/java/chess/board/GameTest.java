@@ -0,0 +1,116 @@
+package chess.board;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies move line navigation behind {@code move}, {@code takeback} and {@code ply} commands, and
+ * {@code position} commands sent to engine for them.
+ */
+class GameTest {
+
+	private static String fen(String moves) {
+		return Board.fromPosition("position startpos moves " + moves).toFen();
+	}
+
+	private static Game play(String... moves) {
+		Game game = new Game(Board.startpos());
+		for (String move : moves) {
+			assertTrue(game.play(move), move);
+		}
+		return game;
+	}
+
+	@Test
+	void takebackDropsMoves() {
+		Game game = play("e2e4", "e7e5", "g1f3");
+		assertTrue(game.takeback(1));
+		assertEquals(2, game.getPly());
+		assertEquals(2, game.getLength());
+		assertEquals(fen("e2e4 e7e5"), game.getBoard().toFen());
+
+		assertFalse(game.takeback(3));
+		assertFalse(game.takeback(-1));
+		assertEquals(2, game.getPly());
+
+		assertTrue(game.takeback(2));
+		assertEquals(Board.START_FEN, game.getBoard().toFen());
+		assertEquals(0, game.getLength());
+	}
+
+	@Test
+	void goToKeepsMoves() {
+		Game game = play("e2e4", "e7e5", "g1f3");
+		assertTrue(game.goTo(1));
+		assertEquals(3, game.getLength());
+		assertEquals(fen("e2e4"), game.getBoard().toFen());
+
+		assertTrue(game.goTo(3));
+		assertEquals(fen("e2e4 e7e5 g1f3"), game.getBoard().toFen());
+		assertFalse(game.goTo(4));
+		assertFalse(game.goTo(-1));
+		assertEquals(3, game.getPly());
+	}
+
+	@Test
+	void sameMoveKeepsLineAndOtherMoveReplacesIt() {
+		Game game = play("e2e4", "e7e5", "g1f3");
+		game.goTo(1);
+		assertTrue(game.play("e7e5"));
+		assertEquals(3, game.getLength());
+
+		game.goTo(1);
+		assertTrue(game.play("c7c5"));
+		assertEquals(2, game.getLength());
+		assertFalse(game.goTo(3));
+		assertEquals(fen("e2e4 c7c5"), game.getBoard().toFen());
+	}
+
+	@Test
+	void illegalMoveIsRejected() {
+		Game game = play("e2e4");
+		assertFalse(game.play("e2e5"));
+		assertFalse(game.play("e7e4"));
+		assertFalse(game.play("x"));
+		assertEquals(1, game.getPly());
+		assertEquals(fen("e2e4"), game.getBoard().toFen());
+	}
+
+	@Test
+	void continuesGivenPosition() {
+		Game game = new Game(Board.fromPosition("position startpos moves d2d4 d7d5"));
+		assertEquals(2, game.getLength());
+		assertTrue(game.play("c2c4"));
+		assertTrue(game.takeback(3));
+		assertEquals(Board.START_FEN, game.getBoard().toFen());
+	}
+
+	@Test
+	void longLine() {
+		Game game = new Game(Board.startpos());
+		String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8"};
+		for (int i = 0; i < 200; i++) {
+			assertTrue(game.play(shuffle[i % 4]));
+		}
+		assertEquals(200, game.getLength());
+		assertTrue(game.goTo(2));
+		assertTrue(game.goTo(200));
+		assertEquals(Board.START_FEN.replace(" 0 1", " 200 101"), game.getBoard().toFen());
+	}
+
+	@Test
+	void positionCommandStartsAtLastIrreversibleMove() {
+		Game game = play("e2e4", "e7e5", "g1f3", "b8c6");
+		String command = game.getBoard().positionCommand();
+		assertTrue(command.startsWith("position fen " + fen("e2e4 e7e5")), command);
+		assertTrue(command.endsWith(" moves g1f3 b8c6"), command);
+		assertEquals(game.getBoard().positionKey(), Board.fromPosition(command).positionKey());
+
+		game.play("f1b5");
+		game.play("a7a6");
+		game.play("b5c6");
+		command = game.getBoard().positionCommand();
+		assertEquals("position fen " + fen("e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5c6"), command);
+	}
+}
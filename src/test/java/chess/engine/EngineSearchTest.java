@@ -0,0 +1,33 @@
+package chess.engine;
+
+import chess.model.AnalysisModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies which engine output becomes result of {@link EngineSearch}.
+ */
+class EngineSearchTest {
+
+	@Test
+	void outputOfPreviousSearchIsIgnored() {
+		FakeEngine engine = new FakeEngine();
+		engine.processRawCommand("go infinite");
+		engine.processRawCommand("stop");
+
+		CompletableFuture<AnalysisModel> result = new EngineSearch(new AnalysisModel())
+				.start(engine, "position startpos moves e2e4", "go depth 5");
+		engine.output("info depth 30 score cp 40 pv d2d4 d7d5", "bestmove d2d4 ponder d7d5");
+		assertFalse(result.isDone());
+
+		engine.output("info depth 5 score cp -25 pv c7c5 g1f3", "bestmove c7c5 ponder g1f3");
+		AnalysisModel analysis = result.join();
+		assertEquals("c7c5", analysis.getBestmove());
+		assertEquals(5, analysis.getDepth());
+		assertEquals(-25, analysis.getScore());
+		assertEquals("c7c5 g1f3", analysis.getPv());
+	}
+}
@@ -0,0 +1,46 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies how {@link EngineThread} handles engine output and matches it to commands passed to it.
+ */
+class EngineThreadTest {
+
+	@Test
+	void searchFinishedWaitsForBestMoveOfLastGo() {
+		FakeEngine engine = new FakeEngine();
+		engine.processRawCommand("go infinite");
+		engine.processRawCommand("stop");
+		engine.processRawCommand("go depth 5");
+		CompletableFuture<Void> finished = engine.searchFinished();
+
+		engine.output("readyok", "bestmove e2e4");
+		assertFalse(finished.isDone());
+		engine.output("bestmove d2d4");
+		assertTrue(finished.isDone());
+	}
+
+	@Test
+	void searchFinishedCompletesWithoutRunningSearch() {
+		FakeEngine engine = new FakeEngine();
+		assertTrue(engine.searchFinished().isDone());
+
+		engine.processRawCommand("go depth 5");
+		engine.output("bestmove e2e4");
+		assertTrue(engine.searchFinished().isDone());
+	}
+
+	@Test
+	void npsIsTakenFromLastInfoWithNps() {
+		FakeEngine engine = new FakeEngine();
+		engine.output("info depth 10 nps 125000 pv e2e4");
+		assertEquals(125000, engine.getNps());
+		engine.output("info string nps 7", "info depth 11 score cp 20");
+		assertEquals(125000, engine.getNps());
+	}
+}
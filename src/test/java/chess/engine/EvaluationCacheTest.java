@@ -0,0 +1,115 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies which engine output is stored in {@link EvaluationCache}.
+ */
+class EvaluationCacheTest {
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() {
+		EvaluationCache cache = new EvaluationCache(2);
+		cache.complete("a", List.of("bestmove e2e4"));
+		cache.complete("b", List.of("bestmove d2d4"));
+		assertNotNull(cache.get("a"));
+		cache.complete("c", List.of("bestmove c2c4"));
+
+		assertEquals(2, cache.getSize());
+		assertNull(cache.get("b"));
+		assertEquals(List.of("bestmove e2e4"), cache.get("a"));
+		assertEquals(List.of("bestmove c2c4"), cache.get("c"));
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void identicalSearchesShareOneSearch() {
+		EvaluationCache cache = new EvaluationCache(10);
+		CompletableFuture<List<String>> first = new CompletableFuture<>();
+		assertNull(cache.startSearch("key", first));
+
+		CompletableFuture<List<String>> second = cache.startSearch("key", new CompletableFuture<>());
+		assertSame(first, second);
+		assertEquals(1, cache.getShared());
+		assertFalse(second.isDone());
+
+		cache.complete("key", List.of("bestmove e2e4"));
+		assertEquals(List.of("bestmove e2e4"), second.join());
+		assertEquals(List.of("bestmove e2e4"), cache.get("key"));
+		assertNull(cache.startSearch("key", new CompletableFuture<>()));
+	}
+
+	@Test
+	void abortedSearchCompletesWaitersWithNull() {
+		EvaluationCache cache = new EvaluationCache(10);
+		CompletableFuture<List<String>> search = new CompletableFuture<>();
+		cache.startSearch("key", search);
+		CompletableFuture<List<String>> waiting = cache.startSearch("key", new CompletableFuture<>());
+
+		cache.abort("key");
+		assertTrue(waiting.isDone());
+		assertNull(waiting.join());
+		assertNull(cache.get("key"));
+		assertNull(cache.startSearch("key", new CompletableFuture<>()));
+	}
+
+	@Test
+	void captureStoresLastInfoOfEverySlot() {
+		EvaluationCache cache = new EvaluationCache(10);
+		FakeEngine engine = new FakeEngine();
+		EvaluationCache.SearchCapture capture = cache.new SearchCapture("key", engine);
+		engine.addUciListener(capture);
+		engine.processRawCommand("go depth 2");
+		engine.output("info depth 1 multipv 1 score cp 20 pv e2e4",
+				"info depth 1 multipv 2 score cp 10 pv d2d4",
+				"info depth 2 multipv 1 score cp 25 pv e2e4 e7e5",
+				"info depth 2 currmove g1f3 currmovenumber 3",
+				"bestmove e2e4 ponder e7e5");
+
+		assertTrue(capture.isDone());
+		assertEquals(List.of("info depth 2 multipv 1 score cp 25 pv e2e4 e7e5",
+				"info depth 1 multipv 2 score cp 10 pv d2d4", "bestmove e2e4 ponder e7e5"), cache.get("key"));
+	}
+
+	@Test
+	void goKeyNormalizesLimits() {
+		assertEquals(EvaluationCache.goKey("go depth 20 nodes 1000"), EvaluationCache.goKey("go  nodes 1000 depth 20"));
+		assertNotEquals(EvaluationCache.goKey("go depth 20"), EvaluationCache.goKey("go depth 21"));
+		assertNull(EvaluationCache.goKey("go infinite"));
+		assertNull(EvaluationCache.goKey("go movetime 1000"));
+		assertNull(EvaluationCache.goKey("go depth 20 movetime 1000"));
+		assertNull(EvaluationCache.goKey("go wtime 1000 btime 1000"));
+		assertNull(EvaluationCache.goKey("go"));
+	}
+
+	@Test
+	void lateBestMoveOfStoppedSearchIsNotCached() {
+		EvaluationCache cache = new EvaluationCache(10);
+		FakeEngine engine = new FakeEngine();
+		engine.processRawCommand("position startpos");
+		engine.processRawCommand("go infinite");
+		engine.output("info depth 20 multipv 1 score cp 30 pv e2e4 e7e5");
+		engine.processRawCommand("stop");
+
+		EvaluationCache.SearchCapture capture = cache.new SearchCapture("key", engine);
+		engine.addUciListener(capture);
+		engine.processRawCommand("position startpos moves e2e4");
+		engine.processRawCommand("go depth 5");
+		engine.output("info depth 21 multipv 1 score cp 31 pv e2e4 e7e5");
+		engine.output("bestmove e2e4 ponder e7e5");
+		assertFalse(capture.isDone());
+		assertNull(cache.get("key"));
+
+		engine.output("info depth 5 multipv 1 score cp -20 pv e7e5 g1f3");
+		engine.output("bestmove e7e5 ponder g1f3");
+		assertTrue(capture.isDone());
+		assertEquals(List.of("info depth 5 multipv 1 score cp -20 pv e7e5 g1f3", "bestmove e7e5 ponder g1f3"),
+				cache.get("key"));
+	}
+}
@@ -0,0 +1,35 @@
+package chess.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Engine which is never started. It records commands passed to it, tests pass engine output to its listeners with
+ * {@link #output(String...)}.
+ */
+class FakeEngine extends EngineThread {
+
+	/**
+	 * commands in the order they were passed, written by budget timer threads too.
+	 */
+	final List<String> commands = new CopyOnWriteArrayList<>();
+
+	FakeEngine() {
+		super("test");
+	}
+
+	@Override
+	public void processRawCommand(String command) {
+		commands.add(command);
+		super.processRawCommand(command);
+	}
+
+	/**
+	 * Passes {@code lines} to listeners as if engine printed them.
+	 */
+	void output(String... lines) {
+		for (String line : lines) {
+			dispatch(line);
+		}
+	}
+}
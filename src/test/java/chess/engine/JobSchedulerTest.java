@@ -0,0 +1,171 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies slot limits, priorities, fair share across owners, preemption and budgets of {@link JobScheduler}. Engines
+ * are not started, their output is passed with {@link FakeEngine#output(String...)}.
+ */
+class JobSchedulerTest {
+
+	/**
+	 * names of started jobs in start order.
+	 */
+	private final List<String> started = new ArrayList<>();
+
+	private JobScheduler.Job submit(JobScheduler scheduler, String name, String owner, JobScheduler.Priority priority,
+									FakeEngine engine) {
+		return scheduler.submit(owner, priority, 1, engine, () -> {
+			started.add(name);
+			engine.processRawCommand("go depth 10");
+		});
+	}
+
+	@Test
+	void jobsWaitForFreeSlot() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine first = new FakeEngine(), second = new FakeEngine();
+		submit(scheduler, "first", "a", JobScheduler.Priority.INTERACTIVE, first);
+		JobScheduler.Job job = submit(scheduler, "second", "a", JobScheduler.Priority.INTERACTIVE, second);
+		assertEquals(List.of("first"), started);
+		assertEquals(1, scheduler.getQueued());
+
+		first.output("bestmove e2e4");
+		assertEquals(List.of("first", "second"), started);
+		assertEquals(0, scheduler.getQueued());
+		assertFalse(job.getDone().isDone());
+
+		second.output("bestmove d2d4");
+		assertTrue(job.getDone().isDone());
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	void interactiveJobsStartBeforeBatchJobs() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine running = new FakeEngine();
+		submit(scheduler, "running", "a", JobScheduler.Priority.INTERACTIVE, running);
+		submit(scheduler, "batch", "a", JobScheduler.Priority.BATCH, new FakeEngine());
+		submit(scheduler, "interactive", "b", JobScheduler.Priority.INTERACTIVE, new FakeEngine());
+
+		running.output("bestmove e2e4");
+		assertEquals(List.of("running", "interactive"), started);
+	}
+
+	@Test
+	void ownersShareSlotsFairly() throws InterruptedException {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine a1 = new FakeEngine(), a2 = new FakeEngine(), b1 = new FakeEngine();
+		submit(scheduler, "a1", "a", JobScheduler.Priority.BATCH, a1);
+		submit(scheduler, "a2", "a", JobScheduler.Priority.BATCH, a2);
+		submit(scheduler, "a3", "a", JobScheduler.Priority.BATCH, new FakeEngine());
+		submit(scheduler, "b1", "b", JobScheduler.Priority.BATCH, b1);
+
+		Thread.sleep(2);
+		a1.output("bestmove e2e4");
+		b1.output("bestmove e2e4");
+		assertEquals(List.of("a1", "b1", "a2"), started);
+	}
+
+	@Test
+	void interactiveJobPreemptsBatchJob() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine batch = new FakeEngine();
+		JobScheduler.Job job = submit(scheduler, "batch", "a", JobScheduler.Priority.BATCH, batch);
+		submit(scheduler, "interactive", "b", JobScheduler.Priority.INTERACTIVE, new FakeEngine());
+
+		assertTrue(job.isPreempted());
+		assertEquals(List.of("go depth 10", "stop"), batch.commands);
+
+		batch.output("bestmove e2e4");
+		assertEquals(List.of("batch", "interactive"), started);
+	}
+
+	@Test
+	void promotedJobIsNotPreempted() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine batch = new FakeEngine();
+		JobScheduler.Job job = submit(scheduler, "batch", "a", JobScheduler.Priority.BATCH, batch);
+		assertTrue(job.promote());
+		submit(scheduler, "interactive", "b", JobScheduler.Priority.INTERACTIVE, new FakeEngine());
+
+		assertFalse(job.isPreempted());
+		assertEquals(List.of("go depth 10"), batch.commands);
+	}
+
+	@Test
+	void promotedWaitingJobMovesToInteractiveQueue() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine running = new FakeEngine();
+		submit(scheduler, "running", "a", JobScheduler.Priority.INTERACTIVE, running);
+		submit(scheduler, "interactive", "a", JobScheduler.Priority.INTERACTIVE, new FakeEngine());
+		JobScheduler.Job batch = submit(scheduler, "batch", "b", JobScheduler.Priority.BATCH, new FakeEngine());
+		assertTrue(batch.promote());
+
+		running.output("bestmove e2e4");
+		assertEquals(List.of("running", "batch"), started);
+	}
+
+	@Test
+	void nodesBudgetStopsSearch() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 1000, false);
+		FakeEngine engine = new FakeEngine();
+		submit(scheduler, "job", "a", JobScheduler.Priority.INTERACTIVE, engine);
+
+		engine.output("info depth 5 nodes 900 pv e2e4");
+		assertEquals(List.of("go depth 10"), engine.commands);
+		engine.output("info depth 6 nodes 1200 pv e2e4");
+		engine.output("info depth 7 nodes 1500 pv e2e4");
+		assertEquals(List.of("go depth 10", "stop"), engine.commands);
+	}
+
+	@Test
+	void movetimeBudgetStopsSearch() throws InterruptedException {
+		JobScheduler scheduler = new JobScheduler(1, 50, 0, false);
+		FakeEngine engine = new FakeEngine();
+		submit(scheduler, "job", "a", JobScheduler.Priority.INTERACTIVE, engine);
+
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (engine.commands.size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(List.of("go depth 10", "stop"), engine.commands);
+	}
+
+	@Test
+	void lateBestMoveOfEarlierSearchDoesNotEndJob() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine engine = new FakeEngine();
+		engine.processRawCommand("go infinite");
+		engine.processRawCommand("stop");
+		JobScheduler.Job job = submit(scheduler, "job", "a", JobScheduler.Priority.INTERACTIVE, engine);
+
+		engine.output("bestmove e2e4");
+		assertFalse(job.getDone().isDone());
+		assertEquals(1, scheduler.getRunning());
+
+		engine.output("bestmove d2d4");
+		assertTrue(job.getDone().isDone());
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	void closedWaitingJobNeverStarts() {
+		JobScheduler scheduler = new JobScheduler(1, 0, 0, false);
+		FakeEngine running = new FakeEngine();
+		submit(scheduler, "running", "a", JobScheduler.Priority.INTERACTIVE, running);
+		JobScheduler.Job waiting = submit(scheduler, "waiting", "a", JobScheduler.Priority.INTERACTIVE,
+				new FakeEngine());
+
+		waiting.close();
+		assertTrue(waiting.getDone().isDone());
+		running.output("bestmove e2e4");
+		assertEquals(List.of("running"), started);
+		assertEquals(0, scheduler.getQueued());
+	}
+}
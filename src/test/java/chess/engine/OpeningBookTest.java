@@ -0,0 +1,50 @@
+package chess.engine;
+
+import chess.board.Board;
+import chess.board.Move;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies Polyglot keys against the examples of the Polyglot book format and lookups in {@code book.bin}, which has
+ * moves e2e4 with weight 10 and d2d4 with weight 20 in the start position and c7c5 after e2e4.
+ */
+class OpeningBookTest {
+
+	private static OpeningBook book() throws Exception {
+		return new OpeningBook(Path.of(OpeningBookTest.class.getResource("book.bin").toURI()), null);
+	}
+
+	private static long key(OpeningBook book, String moves) {
+		return book.polyglotKey(Board.fromPosition("position startpos moves " + moves));
+	}
+
+	@Test
+	void keysMatchPolyglotExamples() throws Exception {
+		OpeningBook book = book();
+		assertEquals(0x463b96181691fc9cL, book.polyglotKey(Board.startpos()));
+		assertEquals(0x823c9b50fd114196L, key(book, "e2e4"));
+		assertEquals(0x0756b94461c50fb0L, key(book, "e2e4 d7d5"));
+		assertEquals(0x662fafb965db29d4L, key(book, "e2e4 d7d5 e4e5"));
+		assertEquals(0x22a48b5a8e47ff78L, key(book, "e2e4 d7d5 e4e5 f7f5"));
+		assertEquals(0x652a607ca3f242c1L, key(book, "e2e4 d7d5 e4e5 f7f5 e1e2"));
+		assertEquals(0x00fdd303c946bdd9L, key(book, "e2e4 d7d5 e4e5 f7f5 e1e2 e8f7"));
+		assertEquals(0x3c8123ea7b067637L, key(book, "a2a4 b7b5 h2h4 b5b4 c2c4"));
+		assertEquals(0x5c3f9b829b279560L, key(book, "a2a4 b7b5 h2h4 b5b4 c2c4 b4c3 a1a3"));
+	}
+
+	@Test
+	void lookupReturnsMoveWithHighestWeight() throws Exception {
+		OpeningBook book = book();
+		assertEquals(3, book.getSize());
+
+		OpeningBook.BookMove move = book.lookup(Board.startpos());
+		assertEquals("d2d4", Move.toUci(move.getMove()));
+		assertEquals(20, move.getWeight());
+		assertEquals("c7c5", Move.toUci(book.lookup(Board.fromPosition("position startpos moves e2e4")).getMove()));
+		assertNull(book.lookup(Board.fromPosition("position startpos moves d2d4")));
+	}
+}
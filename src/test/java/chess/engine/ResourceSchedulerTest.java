@@ -0,0 +1,89 @@
+package chess.engine;
+
+import chess.server.ExecutionThreads;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies CPU lists, budget splitting and option rewriting of {@link ResourceScheduler}. Engines are not started and
+ * processes are not pinned to CPUs.
+ */
+class ResourceSchedulerTest {
+
+	private static ResourceScheduler scheduler(String cpus, int maxHash) {
+		return new ResourceScheduler(cpus, maxHash, false, ExecutionThreads.PLATFORM, false);
+	}
+
+	@Test
+	void parsesCpuLists() {
+		assertArrayEquals(new int[]{0, 2, 4, 5, 6}, ResourceScheduler.parseCpus("0,2,4-6"));
+		assertArrayEquals(new int[]{1, 3, 4}, ResourceScheduler.parseCpus(" 3 - 4 , 1, 3"));
+		assertEquals(Runtime.getRuntime().availableProcessors(), ResourceScheduler.parseCpus("").length);
+		assertEquals(Runtime.getRuntime().availableProcessors(), ResourceScheduler.parseCpus(null).length);
+	}
+
+	@Test
+	void cpusAreSplitBetweenBusyEngines() {
+		ResourceScheduler scheduler = scheduler("0-3", 0);
+		ResourceScheduler.Slot first = scheduler.register(new FakeEngine());
+		assertEquals(4, first.getBudget());
+
+		ResourceScheduler.Slot second = scheduler.register(new FakeEngine());
+		ResourceScheduler.Slot third = scheduler.register(new FakeEngine());
+		assertEquals(2, first.getBudget());
+		assertEquals(1, second.getBudget());
+		assertEquals(1, third.getBudget());
+
+		scheduler.setIdle(first, true);
+		assertEquals(1, first.getBudget());
+		assertEquals(2, second.getBudget());
+		assertEquals(2, third.getBudget());
+
+		scheduler.unregister(second);
+		assertEquals(4, third.getBudget());
+	}
+
+	@Test
+	void everyEngineGetsCpuWhenThereAreMoreEnginesThanCpus() {
+		ResourceScheduler scheduler = scheduler("0-1", 0);
+		ResourceScheduler.Slot[] slots = new ResourceScheduler.Slot[3];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = scheduler.register(new FakeEngine());
+		}
+		for (ResourceScheduler.Slot slot : slots) {
+			assertEquals(1, slot.getBudget());
+		}
+	}
+
+	@Test
+	void threadsAreSetBeforeGo() {
+		ResourceScheduler scheduler = scheduler("0-3", 0);
+		ResourceScheduler.Slot slot = scheduler.register(new FakeEngine());
+		assertNull(slot.before("go depth 10"));
+
+		slot.onEngineOutput("option name Threads type spin default 1 min 1 max 512");
+		assertNull(slot.before("position startpos"));
+		assertEquals("setoption name Threads value 4", slot.before("go depth 10"));
+		assertNull(slot.before("go depth 10"));
+
+		scheduler.register(new FakeEngine());
+		assertEquals("setoption name Threads value 2", slot.before("go infinite"));
+	}
+
+	@Test
+	void threadsAndHashAreLimited() {
+		ResourceScheduler scheduler = scheduler("0-3", 256);
+		ResourceScheduler.Slot slot = scheduler.register(new FakeEngine());
+		slot.onEngineOutput("option name Threads type spin default 1 min 1 max 512");
+
+		assertEquals("setoption name Threads value 4", slot.filter("setoption name Threads value 8"));
+		assertEquals("setoption name Threads value 2", slot.filter("setoption name threads value 2"));
+		assertNull(slot.before("go depth 10"));
+
+		assertEquals("setoption name Hash value 256", slot.filter("setoption name Hash value 1024"));
+		assertEquals("setoption name Hash value 256", slot.filter("setoption name Hash value x"));
+		assertEquals("setoption name Hash value 128", slot.filter("setoption name Hash value 128"));
+		assertEquals("setoption name MultiPV value 3", slot.filter("setoption name MultiPV value 3"));
+	}
+}
@@ -0,0 +1,76 @@
+package chess.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads back transcripts written by {@link TranscriptRecorder}.
+ */
+class TranscriptReplayTest {
+
+	/**
+	 * size of a record of a 4 character line.
+	 */
+	private static final int RECORD_SIZE = TranscriptRecorder.RECORD_HEADER_SIZE + 4;
+
+	/**
+	 * file size holding two records of 4 character lines.
+	 */
+	private static final int FILE_SIZE = TranscriptRecorder.HEADER_SIZE + 2 * RECORD_SIZE;
+
+	@Test
+	void readsRecordsOfRotatedFilesInOrder(@TempDir Path directory) throws Exception {
+		TranscriptRecorder recorder = new TranscriptRecorder(directory, FILE_SIZE, 10, false);
+		recorder.start(1, "eng1");
+		recorder.command(1, "uci\n");
+		recorder.output(1, "ok 1");
+		recorder.output(2, "ok 2");
+		recorder.stop(1, "done");
+
+		assertEquals(3, TranscriptRecorder.files(directory).size());
+		assertEquals(List.of("* 1 eng1", "> 1 uci", "< 1 ok 1", "< 2 ok 2", "* 1 done"), read(directory));
+	}
+
+	@Test
+	void oldFilesAreDeleted(@TempDir Path directory) throws Exception {
+		TranscriptRecorder recorder = new TranscriptRecorder(directory, FILE_SIZE, 2, false);
+		for (int i = 0; i < 5; i++) {
+			recorder.output(1, "ln0" + i);
+		}
+
+		assertEquals(2, TranscriptRecorder.files(directory).size());
+		assertEquals(List.of("< 1 ln02", "< 1 ln03", "< 1 ln04"), read(directory));
+	}
+
+	@Test
+	void uncommittedRecordIsSkipped(@TempDir Path directory) throws Exception {
+		TranscriptRecorder recorder = new TranscriptRecorder(directory, FILE_SIZE, 10, false);
+		for (int i = 0; i < 4; i++) {
+			recorder.output(1, "ln0" + i);
+		}
+		recorder.force();
+
+		Path first = TranscriptRecorder.files(directory).get(0);
+		try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{0}), TranscriptRecorder.HEADER_SIZE + 4);
+		}
+
+		assertEquals(List.of("< 1 ln01", "< 1 ln02", "< 1 ln03"), read(directory));
+	}
+
+	private static List<String> read(Path directory) throws Exception {
+		List<String> lines = new ArrayList<>();
+		new TranscriptReplay(directory).read(entry ->
+				lines.add(entry.getDirection() + " " + entry.getEngine() + " " + entry.getLine()));
+		return lines;
+	}
+}
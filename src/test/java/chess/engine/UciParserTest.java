@@ -0,0 +1,157 @@
+package chess.engine;
+
+import chess.board.Board;
+import chess.board.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies parsing of engine output into {@link UciInfo} and {@link UciBestMove}.
+ */
+class UciParserTest {
+
+	private final UciParser parser = new UciParser();
+
+	@Test
+	void info() {
+		UciInfo info = parser.parseInfo("info depth 24 seldepth 31 multipv 2 score cp -35 upperbound nodes 1234567 "
+				+ "nps 987654 hashfull 412 tbhits 3 time 1250 pv e2e4 e7e5 g1f3");
+		assertEquals(24, info.getDepth());
+		assertEquals(31, info.getSeldepth());
+		assertEquals(2, info.getMultipv());
+		assertEquals(UciInfo.ScoreType.CP, info.getScoreType());
+		assertEquals(-35, info.getScore());
+		assertEquals(UciInfo.Bound.UPPER, info.getBound());
+		assertEquals(1234567, info.getNodes());
+		assertEquals(987654, info.getNps());
+		assertEquals(412, info.getHashfull());
+		assertEquals(3, info.getTbhits());
+		assertEquals(1250, info.getTime());
+		assertEquals(3, info.getPvLength());
+		assertEquals("e2e4", Move.toUci(info.getPvMove(0)));
+		assertEquals("g1f3", Move.toUci(info.getPvMove(2)));
+		assertNull(info.getString());
+	}
+
+	@Test
+	void infoWithoutFieldsIsReset() {
+		parser.parseInfo("info depth 10 multipv 3 score mate 4 lowerbound pv e7e8q");
+		UciInfo info = parser.parseInfo("info currmove b1c3 currmovenumber 7");
+		assertEquals(-1, info.getDepth());
+		assertEquals(1, info.getMultipv());
+		assertEquals(UciInfo.ScoreType.NONE, info.getScoreType());
+		assertEquals(UciInfo.Bound.EXACT, info.getBound());
+		assertFalse(info.hasPv());
+		assertEquals("b1c3", Move.toUci(info.getCurrmove()));
+		assertEquals(7, info.getCurrmovenumber());
+	}
+
+	@Test
+	void mateScoreAndPromotion() {
+		UciInfo info = parser.parseInfo("info depth 10 score mate -3 pv e7e8q a1a2");
+		assertEquals(UciInfo.ScoreType.MATE, info.getScoreType());
+		assertEquals(-3, info.getScore());
+		assertEquals(Board.QUEEN, Move.promotion(info.getPvMove(0)));
+		assertEquals("e7e8q", Move.toUci(info.getPvMove(0)));
+	}
+
+	@Test
+	void infoString() {
+		UciInfo info = parser.parseInfo("info string NNUE evaluation using nn-1.nnue enabled");
+		assertEquals("NNUE evaluation using nn-1.nnue enabled", info.getString());
+		assertFalse(info.hasPv());
+	}
+
+	@Test
+	void unknownKeywordsAreSkipped() {
+		UciInfo info = parser.parseInfo("info depth 5 wdl 300 600 100 refutation d1h5 g6h5 pv d2d4");
+		assertEquals(5, info.getDepth());
+		assertEquals(1, info.getPvLength());
+		assertEquals("d2d4", Move.toUci(info.getPvMove(0)));
+	}
+
+	@Test
+	void longPv() {
+		StringBuilder line = new StringBuilder("info depth 99 pv");
+		for (int i = 0; i < 100; i++) {
+			line.append(i % 2 == 0 ? " g1f3" : " f3g1");
+		}
+		UciInfo info = parser.parseInfo(line.toString());
+		assertEquals(100, info.getPvLength());
+		assertEquals("f3g1", Move.toUci(info.getPvMove(99)));
+	}
+
+	@Test
+	void bestMoveWithPonder() {
+		UciBestMove bestMove = parser.parseBestMove("bestmove e2e4 ponder e7e5");
+		assertEquals("e2e4", Move.toUci(bestMove.getMove()));
+		assertEquals("e7e5", Move.toUci(bestMove.getPonder()));
+		assertEquals("bestmove e2e4 ponder e7e5", bestMove.getLine());
+	}
+
+	@Test
+	void bestMoveWithoutPonder() {
+		parser.parseBestMove("bestmove e2e4 ponder e7e5");
+		UciBestMove bestMove = parser.parseBestMove("bestmove d2d4");
+		assertEquals("d2d4", Move.toUci(bestMove.getMove()));
+		assertEquals(-1, bestMove.getPonder());
+	}
+
+	@Test
+	void bestMoveWithoutMove() {
+		assertEquals(Move.NONE, parser.parseBestMove("bestmove 0000").getMove());
+		UciBestMove bestMove = parser.parseBestMove("bestmove (none)");
+		assertEquals(Move.NONE, bestMove.getMove());
+		assertEquals(-1, bestMove.getPonder());
+		assertEquals("0000", Move.toUci(bestMove.getMove()));
+	}
+
+	@Test
+	void listenersGetParsedLines() {
+		List<String> events = new ArrayList<>();
+		parser.addListener(new UciListener() {
+			@Override
+			public void onInfo(UciInfo info) {
+				events.add("info " + info.getDepth());
+			}
+
+			@Override
+			public void onBestMove(UciBestMove bestMove) {
+				events.add("bestmove " + Move.toUci(bestMove.getMove()));
+			}
+
+			@Override
+			public void onOther(String line) {
+				events.add("other " + line);
+			}
+		});
+		parser.parse("info depth 3 pv e2e4");
+		parser.parse("readyok");
+		parser.parse("bestmove e2e4");
+		assertEquals(List.of("info 3", "other readyok", "bestmove e2e4"), events);
+	}
+
+	@Test
+	void failingListenerDoesNotStopOthers() {
+		List<String> moves = new ArrayList<>();
+		parser.addListener(new UciListener() {
+			@Override
+			public void onBestMove(UciBestMove bestMove) {
+				throw new IllegalStateException("first");
+			}
+		});
+		parser.addListener(new UciListener() {
+			@Override
+			public void onBestMove(UciBestMove bestMove) {
+				moves.add(Move.toUci(bestMove.getMove()));
+			}
+		});
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> parser.parse("bestmove e2e4"));
+		assertEquals("first", e.getMessage());
+		assertEquals(List.of("e2e4"), moves);
+	}
+}
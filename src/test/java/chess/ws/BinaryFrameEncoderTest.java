@@ -0,0 +1,64 @@
+package chess.ws;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that principal variation deltas of {@link BinaryFrameEncoder} are based on frames which were sent.
+ */
+class BinaryFrameEncoderTest {
+
+	private static final String INFO = "info depth 5 multipv 1 score cp 20 nodes 100 nps 1000 time 100 pv e2e4 e7e5";
+
+	private static byte[] encode(BinaryFrameEncoder encoder, String line) {
+		ByteBuffer payload = ((BinaryMessage) encoder.encode(new TextMessage(line))).getPayload();
+		byte[] frame = new byte[payload.remaining()];
+		payload.get(frame);
+		return frame;
+	}
+
+	@Test
+	void frameWhichWasNotSentIsEncodedAgainWithWholePv() {
+		BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+		byte[] first = encode(encoder, INFO);
+		assertArrayEquals(first, encode(encoder, INFO));
+	}
+
+	@Test
+	void sentFrameIsBaseOfNextDelta() {
+		BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+		byte[] full = encode(encoder, INFO);
+		assertEquals(0, full[full.length - 6]);
+		assertEquals(2, full[full.length - 5]);
+		encoder.sent();
+
+		byte[] delta = encode(encoder, INFO);
+		assertEquals(full.length - 4, delta.length);
+		assertEquals(2, delta[delta.length - 2]);
+		assertEquals(0, delta[delta.length - 1]);
+	}
+
+	@Test
+	void sentBestMoveClearsPv() {
+		BinaryFrameEncoder encoder = new BinaryFrameEncoder();
+		byte[] full = encode(encoder, INFO);
+		encoder.sent();
+		encode(encoder, "bestmove e2e4 ponder e7e5");
+		assertNotEquals(full.length, encode(encoder, INFO).length);
+
+		encode(encoder, "bestmove e2e4 ponder e7e5");
+		encoder.sent();
+		assertArrayEquals(full, encode(encoder, INFO));
+	}
+
+	@Test
+	void otherLinesStayText() {
+		TextMessage message = new TextMessage("readyok");
+		assertSame(message, new BinaryFrameEncoder().encode(message));
+	}
+}